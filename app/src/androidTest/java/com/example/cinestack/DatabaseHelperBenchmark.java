@@ -0,0 +1,98 @@
+package com.example.cinestack;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Per-operation latency of insertMovie/deleteMovie on a real device.
+ * Compares reopening the connection after every call (the old behaviour)
+ * with the shared long-lived WAL connection, and per-row inserts with
+ * the batched insertMovies(). Results go to logcat.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseHelperBenchmark {
+
+    private static final String TAG = "DbBenchmark";
+    private static final String DB_NAME = "benchmark.db";
+    private static final int CYCLES = 10_000;
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void insertDeleteCycles_reopenPerCall() {
+        run("reopen per call", true);
+    }
+
+    @Test
+    public void insertDeleteCycles_longLivedConnection() {
+        run("long-lived connection", false);
+    }
+
+    @Test
+    public void insertRows_perRowVersusBatch() {
+        DatabaseHelper helper = new DatabaseHelper(context, DB_NAME);
+        List<Movie> movies = new ArrayList<>(CYCLES);
+        for (int i = 0; i < CYCLES; i++) {
+            movies.add(new Movie(0, "Movie " + i, "Drama", 2000, "Review " + i));
+        }
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (Movie movie : movies) {
+            helper.insertMovie(movie.getTitle(), movie.getGenre(), movie.getYear(), movie.getReview(), 1);
+        }
+        long perRow = SystemClock.elapsedRealtimeNanos() - start;
+
+        start = SystemClock.elapsedRealtimeNanos();
+        assertEquals(CYCLES, helper.insertMovies(movies, 1));
+        long batch = SystemClock.elapsedRealtimeNanos() - start;
+        helper.close();
+
+        Log.i(TAG, String.format("insert %d rows: per-row %.0f rows/s, batch %.0f rows/s",
+                CYCLES, CYCLES / (perRow / 1e9), CYCLES / (batch / 1e9)));
+    }
+
+    private void run(String label, boolean closeAfterEachCall) {
+        DatabaseHelper helper = new DatabaseHelper(context, DB_NAME);
+        long start = SystemClock.elapsedRealtimeNanos();
+
+        // Fresh database, so AUTOINCREMENT hands out ids 1..CYCLES in order
+        for (int i = 1; i <= CYCLES; i++) {
+            assertTrue(helper.insertMovie("Movie " + i, "Drama", 2000, "", 1));
+            if (closeAfterEachCall) helper.close();
+
+            assertTrue(helper.deleteMovie(i));
+            if (closeAfterEachCall) helper.close();
+        }
+
+        long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+        helper.close();
+
+        Log.i(TAG, String.format("%s: %d cycles, %.1f us/op",
+                label, CYCLES, elapsed / 1000.0 / (CYCLES * 2)));
+    }
+}
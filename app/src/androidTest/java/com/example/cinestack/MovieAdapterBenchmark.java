@@ -0,0 +1,68 @@
+package com.example.cinestack;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+import android.widget.FrameLayout;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Cost of MovieAdapter.onBindViewHolder on a real device.
+ * Binds 10k rows into one recycled ViewHolder and reports the time per bind,
+ * first with cold label caches (every genre/year/review seen for the first time)
+ * and then scrolling back over the same rows. Results go to logcat.
+ * Allocations aren't reported: the Debug allocation counters are unreliable on ART;
+ * use the Memory Profiler's allocation tracking while this runs to see them.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MovieAdapterBenchmark {
+
+    private static final String TAG = "AdapterBenchmark";
+    private static final int ROWS = 10_000;
+
+    @Test
+    public void bindRows_reportsTimePerBind() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+            List<Movie> movies = new ArrayList<>(ROWS);
+            for (int i = 0; i < ROWS; i++) {
+                movies.add(new Movie(i + 1, "Movie " + i, "Genre " + (i % 12),
+                        1950 + (i % 70), "Review " + (i % 200)));
+            }
+
+            MovieAdapter adapter = new MovieAdapter(null, after -> { });
+            // First submit of a fresh adapter is applied synchronously
+            adapter.submitFirstPage(movies, false);
+            assertEquals(ROWS, adapter.getItemCount());
+
+            MovieAdapter.MovieViewHolder holder =
+                    adapter.onCreateViewHolder(new FrameLayout(context), 0);
+
+            report("cold", adapter, holder);
+            report("warm", adapter, holder);
+        });
+    }
+
+    private static void report(String label, MovieAdapter adapter, MovieAdapter.MovieViewHolder holder) {
+        long start = SystemClock.elapsedRealtimeNanos();
+
+        for (int position = 0; position < ROWS; position++) {
+            adapter.onBindViewHolder(holder, position);
+        }
+
+        long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+
+        Log.i(TAG, String.format("%s bind x%d: %.0f ns/bind", label, ROWS, elapsed / (double) ROWS));
+    }
+}
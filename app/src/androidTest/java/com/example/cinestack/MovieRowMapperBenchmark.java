@@ -0,0 +1,132 @@
+package com.example.cinestack;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Mapping throughput for 100k movie rows on a real device.
+ * Compares the old per-row loop (getColumnIndexOrThrow for every column of every row)
+ * with MovieRowMapper, both building a Movie per row and reusing one instance.
+ * Every pass runs its own query, so each pays the same CursorWindow fills. Results go to logcat.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MovieRowMapperBenchmark {
+
+    private static final String TAG = "RowMapperBenchmark";
+    private static final String DB_NAME = "row_mapper_benchmark.db";
+    private static final int ROWS = 100_000;
+    private static final int ROUNDS = 5;
+
+    private Context context;
+    private DatabaseHelper helper;
+    // Read from every mapped row, so no pass can be skipped as dead code
+    private long checksum;
+
+    /**
+     * One way of turning the whole cursor into Movies; returns the rows mapped
+     */
+    private interface Mapping {
+        int map(Cursor cursor);
+    }
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        helper = new DatabaseHelper(context, DB_NAME);
+
+        List<Movie> movies = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            movies.add(new Movie(0, "Movie " + i, "Drama", 1950 + i % 70, "Review of movie " + i));
+        }
+        assertEquals(ROWS, helper.insertMovies(movies, 1));
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void map100kRows_perRowLookupVersusMapper() {
+        Mapping legacy = this::mapLegacy;
+        Mapping mapper = cursor -> consume(MovieRowMapper.readAll(cursor));
+        Mapping reused = cursor -> {
+            MovieRowMapper rowMapper = new MovieRowMapper(cursor);
+            Movie movie = new Movie(0, null, null, 0, null);
+            int rows = 0;
+            while (cursor.moveToNext()) {
+                checksum += rowMapper.readInto(movie).getId();
+                rows++;
+            }
+            cursor.close();
+            return rows;
+        };
+
+        // Warm up (JIT, page cache)
+        measure(legacy);
+        measure(mapper);
+        measure(reused);
+
+        Log.i(TAG, String.format("map %d rows: per-row lookup %.0f rows/s, MovieRowMapper %.0f rows/s, "
+                        + "MovieRowMapper reusing one Movie %.0f rows/s (checksum %d)",
+                ROWS, rowsPerSecond(legacy), rowsPerSecond(mapper), rowsPerSecond(reused), checksum));
+    }
+
+    // Best of ROUNDS, to keep GC pauses and background work out of the comparison
+    private double rowsPerSecond(Mapping mapping) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            best = Math.min(best, measure(mapping));
+        }
+        return ROWS / (best / 1e9);
+    }
+
+    private long measure(Mapping mapping) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        assertEquals(ROWS, mapping.map(helper.getMoviesByUser(1)));
+        return SystemClock.elapsedRealtimeNanos() - start;
+    }
+
+    private int consume(List<Movie> movies) {
+        for (Movie movie : movies) checksum += movie.getId();
+        return movies.size();
+    }
+
+    // What MovieRepository.readMovies did before MovieRowMapper
+    private int mapLegacy(Cursor cursor) {
+        List<Movie> movies = new ArrayList<>();
+
+        if (cursor.moveToFirst()) {
+            do {
+                int id = cursor.getInt(cursor.getColumnIndexOrThrow("movie_id"));
+                String title = cursor.getString(cursor.getColumnIndexOrThrow("title"));
+                String genre = cursor.getString(cursor.getColumnIndexOrThrow("genre"));
+                int year = cursor.getInt(cursor.getColumnIndexOrThrow("year"));
+                String review = cursor.getString(cursor.getColumnIndexOrThrow("review"));
+                boolean truncated = cursor.getInt(cursor.getColumnIndexOrThrow("review_truncated")) != 0;
+
+                movies.add(new Movie(id, title, genre, year, review, truncated));
+            } while (cursor.moveToNext());
+        }
+
+        cursor.close();
+        return consume(movies);
+    }
+}
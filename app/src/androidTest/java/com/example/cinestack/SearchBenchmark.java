@@ -0,0 +1,99 @@
+package com.example.cinestack;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Latency of the old title LIKE '%keyword%' scan against the FTS index
+ * at 1k, 10k and 100k movies. Results go to logcat.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SearchBenchmark {
+
+    private static final String TAG = "SearchBenchmark";
+    private static final String DB_NAME = "search_benchmark.db";
+    private static final int USER_ID = 1;
+    private static final int RUNS = 20;
+    private static final String[] WORDS = {
+            "alien", "matrix", "shadow", "river", "night", "empire", "storm", "garden"
+    };
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void likeVersusFts() {
+        DatabaseHelper helper = new DatabaseHelper(context, DB_NAME);
+        int rows = 0;
+
+        for (int target : new int[]{1_000, 10_000, 100_000}) {
+            seed(helper, rows, target);
+            rows = target;
+
+            long like = time(() -> helper.getReadableDatabase().rawQuery(
+                    "SELECT * FROM movies WHERE user_id=? AND title LIKE ?",
+                    new String[]{String.valueOf(USER_ID), "%stor%"}));
+            long fts = time(() -> helper.searchMovies(USER_ID, "stor"));
+
+            Log.i(TAG, String.format("%d rows: LIKE %.2f ms, FTS %.2f ms",
+                    rows, like / 1e6, fts / 1e6));
+        }
+
+        helper.close();
+    }
+
+    private void seed(DatabaseHelper helper, int from, int to) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (int i = from; i < to; i++) {
+                String title = WORDS[i % WORDS.length] + " " + WORDS[(i / 7) % WORDS.length] + " " + i;
+                helper.insertMovie(title, "Drama", 1950 + i % 70, "Review number " + i, USER_ID);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Median nanoseconds to run the query and walk every row
+    private long time(QuerySupplier query) {
+        long[] samples = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            Cursor cursor = query.run();
+            while (cursor.moveToNext()) {
+                cursor.getString(1);
+            }
+            cursor.close();
+            samples[i] = SystemClock.elapsedRealtimeNanos() - start;
+        }
+        java.util.Arrays.sort(samples);
+        return samples[RUNS / 2];
+    }
+
+    private interface QuerySupplier {
+        Cursor run();
+    }
+}
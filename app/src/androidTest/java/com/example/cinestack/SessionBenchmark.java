@@ -0,0 +1,79 @@
+package com.example.cinestack;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Cost of reading the logged-in user id on a real device.
+ * Compares the old per-call getSharedPreferences("UserSession").getInt()
+ * with SessionManager.getUserId() served from memory. Results go to logcat.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SessionBenchmark {
+
+    private static final String TAG = "SessionBenchmark";
+    private static final String LEGACY_PREFS = "UserSessionBenchmark";
+    private static final int READS = 100_000;
+    private static final int WARMUP = 10_000;
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.getSharedPreferences(LEGACY_PREFS, Context.MODE_PRIVATE)
+                .edit().putInt("user_id", 7).commit();
+    }
+
+    @After
+    public void tearDown() {
+        context.getSharedPreferences(LEGACY_PREFS, Context.MODE_PRIVATE).edit().clear().commit();
+    }
+
+    @Test
+    public void readUserId_sharedPreferencesVersusMemory() {
+        SessionManager session = new SessionManager(context);
+        session.createLoginSession(new User(7, "bench", "bench@example.com", "Bench"));
+
+        long checksum = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            checksum += readLegacy() + session.getUserId();
+        }
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < READS; i++) {
+            checksum += readLegacy();
+        }
+        long legacy = SystemClock.elapsedRealtimeNanos() - start;
+
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < READS; i++) {
+            checksum += session.getUserId();
+        }
+        long memory = SystemClock.elapsedRealtimeNanos() - start;
+
+        session.clearSession();
+        assertEquals(7L * 2 * (READS + WARMUP), checksum);
+
+        Log.i(TAG, String.format("read user id x%d: SharedPreferences %.1f ns/read, SessionManager %.1f ns/read",
+                READS, legacy / (double) READS, memory / (double) READS));
+    }
+
+    // What MainActivity used to do on every load/search
+    private int readLegacy() {
+        SharedPreferences prefs = context.getSharedPreferences(LEGACY_PREFS, Context.MODE_PRIVATE);
+        return prefs.getInt("user_id", -1);
+    }
+}
@@ -1,7 +1,8 @@
 package com.example.cinestack;
 
-import android.content.SharedPreferences;
 import android.os.Bundle;
+import android.widget.ArrayAdapter;
+import android.widget.AutoCompleteTextView;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.Toast;
@@ -10,9 +11,10 @@ import androidx.appcompat.app.AppCompatActivity;
 
 public class AddMovieActivity extends AppCompatActivity {
 
-    private EditText etTitle, etGenre, etYear, etReview;
+    private EditText etTitle, etYear, etReview;
+    private AutoCompleteTextView etGenre;
     private Button btnSaveMovie;
-    private DatabaseHelper databaseHelper;
+    private MovieRepository movieRepository;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -25,9 +27,27 @@ public class AddMovieActivity extends AppCompatActivity {
         etReview = findViewById(R.id.etReview);
         btnSaveMovie = findViewById(R.id.btnSaveMovie);
 
-        databaseHelper = new DatabaseHelper(this);
+        movieRepository = new MovieRepository(this);
 
         btnSaveMovie.setOnClickListener(v -> saveMovie());
+
+        loadGenreSuggestions();
+    }
+
+    // Suggest existing genres so the same genre is typed the same way
+    private void loadGenreSuggestions() {
+        int userId = SessionManager.getInstance(this).getUserId();
+
+        if (userId == SessionManager.NO_USER) return;
+
+        movieRepository.getGenreCounts(userId, counts -> {
+            String[] names = new String[counts.size()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = counts.get(i).getName();
+            }
+            etGenre.setAdapter(new ArrayAdapter<>(this,
+                    android.R.layout.simple_dropdown_item_1line, names));
+        });
     }
 
     private void saveMovie() {
@@ -44,21 +64,24 @@ public class AddMovieActivity extends AppCompatActivity {
 
         int year = Integer.parseInt(yearStr);
 
-        SharedPreferences prefs = getSharedPreferences("UserSession", MODE_PRIVATE);
-        int userId = prefs.getInt("user_id", -1);
+        int userId = SessionManager.getInstance(this).getUserId();
 
-        if (userId == -1) {
+        if (userId == SessionManager.NO_USER) {
             Toast.makeText(this, "User not logged in!", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        boolean inserted = databaseHelper.insertMovie(title, genre, year, review, userId);
+        btnSaveMovie.setEnabled(false);
 
-        if (inserted) {
-            Toast.makeText(this, "Movie added successfully!", Toast.LENGTH_SHORT).show();
-            finish();
-        } else {
-            Toast.makeText(this, "Failed to add movie", Toast.LENGTH_SHORT).show();
-        }
+        movieRepository.insertMovie(title, genre, year, review, userId, inserted -> {
+
+            if (inserted) {
+                Toast.makeText(this, "Movie added successfully!", Toast.LENGTH_SHORT).show();
+                finish();
+            } else {
+                btnSaveMovie.setEnabled(true);
+                Toast.makeText(this, "Failed to add movie", Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 }
\ No newline at end of file
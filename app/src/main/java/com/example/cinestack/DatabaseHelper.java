@@ -2,20 +2,30 @@ package com.example.cinestack;
 
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.CancellationSignal;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 public class DatabaseHelper extends SQLiteOpenHelper {
 
     private static final String DATABASE_NAME = "CineStack.db";
-    private static final int DATABASE_VERSION = 3; // 🔥 IMPORTANT: upgraded
 
     // Users table
     private static final String TABLE_USERS = "users";
@@ -34,6 +44,9 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String COLUMN_YEAR = "year";
     private static final String COLUMN_REVIEW = "review";
     private static final String COLUMN_USER_ID_FK = "user_id";
+    // Set when a movie is deleted; the row stays for the undo window, then is purged
+    private static final String COLUMN_DELETED_AT = "deleted_at";
+    private static final String LIVE = COLUMN_DELETED_AT + " IS NULL";
 
     // Create Users Table
     private static final String CREATE_USERS_TABLE =
@@ -59,41 +72,586 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                     TABLE_USERS + "(" + COLUMN_ID + ") ON DELETE CASCADE" +
                     ")";
 
-    public DatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    // Full-text index over movies (external content, so text is stored once)
+    private static final String TABLE_MOVIES_FTS = "movies_fts";
+
+    private static final String CREATE_MOVIES_FTS_TABLE =
+            "CREATE VIRTUAL TABLE " + TABLE_MOVIES_FTS + " USING fts4(" +
+                    "content=\"" + TABLE_MOVIES + "\", " +
+                    COLUMN_TITLE + ", " +
+                    COLUMN_GENRE + ", " +
+                    COLUMN_REVIEW + ", " +
+                    "tokenize=unicode61" +
+                    ")";
+
+    // Triggers keeping movies_fts in step with movies
+    private static final String[] CREATE_MOVIES_FTS_TRIGGERS = {
+            "CREATE TRIGGER movies_fts_bu BEFORE UPDATE ON " + TABLE_MOVIES + " BEGIN " +
+                    "DELETE FROM " + TABLE_MOVIES_FTS + " WHERE docid=old." + COLUMN_MOVIE_ID + "; END",
+            "CREATE TRIGGER movies_fts_bd BEFORE DELETE ON " + TABLE_MOVIES + " BEGIN " +
+                    "DELETE FROM " + TABLE_MOVIES_FTS + " WHERE docid=old." + COLUMN_MOVIE_ID + "; END",
+            "CREATE TRIGGER movies_fts_au AFTER UPDATE ON " + TABLE_MOVIES + " BEGIN " +
+                    "INSERT INTO " + TABLE_MOVIES_FTS + "(docid, " + COLUMN_TITLE + ", " +
+                    COLUMN_GENRE + ", " + COLUMN_REVIEW + ") VALUES(new." + COLUMN_MOVIE_ID +
+                    ", new." + COLUMN_TITLE + ", new." + COLUMN_GENRE + ", new." + COLUMN_REVIEW + "); END",
+            "CREATE TRIGGER movies_fts_ai AFTER INSERT ON " + TABLE_MOVIES + " BEGIN " +
+                    "INSERT INTO " + TABLE_MOVIES_FTS + "(docid, " + COLUMN_TITLE + ", " +
+                    COLUMN_GENRE + ", " + COLUMN_REVIEW + ") VALUES(new." + COLUMN_MOVIE_ID +
+                    ", new." + COLUMN_TITLE + ", new." + COLUMN_GENRE + ", new." + COLUMN_REVIEW + "); END"
+    };
+
+    // Indexes for per-user lookups (paging by movie_id, ordering by title)
+    private static final String CREATE_MOVIES_USER_INDEX =
+            "CREATE INDEX IF NOT EXISTS idx_movies_user ON " + TABLE_MOVIES +
+                    "(" + COLUMN_USER_ID_FK + ")";
+    private static final String CREATE_MOVIES_USER_TITLE_INDEX =
+            "CREATE INDEX IF NOT EXISTS idx_movies_user_title ON " + TABLE_MOVIES +
+                    "(" + COLUMN_USER_ID_FK + ", " + COLUMN_TITLE + ")";
+
+    // One index per sort order, so sorted pages are read in index order (no temp sort)
+    private static final String CREATE_MOVIES_USER_YEAR_INDEX =
+            "CREATE INDEX IF NOT EXISTS idx_movies_user_year ON " + TABLE_MOVIES +
+                    "(" + COLUMN_USER_ID_FK + ", " + COLUMN_YEAR + ")";
+    private static final String CREATE_MOVIES_USER_GENRE_INDEX =
+            "CREATE INDEX IF NOT EXISTS idx_movies_user_genre ON " + TABLE_MOVIES +
+                    "(" + COLUMN_USER_ID_FK + ", " + COLUMN_GENRE + ")";
+
+    // Normalised genres: one row per distinct genre, linked to movies many-to-many.
+    // movies.genre keeps the display text; user_id is copied into movie_genres so
+    // per-user genre counts come from one index.
+    private static final String CREATE_GENRES_TABLE =
+            "CREATE TABLE " + GenreLinker.TABLE_GENRES + " (" +
+                    "genre_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "name TEXT NOT NULL, " +
+                    "normalized_name TEXT NOT NULL UNIQUE" +
+                    ")";
+    private static final String CREATE_MOVIE_GENRES_TABLE =
+            "CREATE TABLE " + GenreLinker.TABLE_MOVIE_GENRES + " (" +
+                    "movie_id INTEGER NOT NULL, " +
+                    "genre_id INTEGER NOT NULL, " +
+                    "user_id INTEGER NOT NULL, " +
+                    "PRIMARY KEY (movie_id, genre_id)" +
+                    ")";
+    // Each user's own spelling of a genre (genres.name is just the first one anyone typed)
+    private static final String CREATE_USER_GENRES_TABLE =
+            "CREATE TABLE " + GenreLinker.TABLE_USER_GENRES + " (" +
+                    "user_id INTEGER NOT NULL, " +
+                    "genre_id INTEGER NOT NULL, " +
+                    "name TEXT NOT NULL, " +
+                    "PRIMARY KEY (user_id, genre_id)" +
+                    ") WITHOUT ROWID";
+    private static final String CREATE_MOVIE_GENRES_USER_INDEX =
+            "CREATE INDEX IF NOT EXISTS idx_movie_genres_user ON " + GenreLinker.TABLE_MOVIE_GENRES +
+                    "(user_id, genre_id, movie_id)";
+    // Foreign keys aren't enabled, so links are removed by trigger
+    private static final String CREATE_MOVIE_GENRES_DELETE_TRIGGER =
+            "CREATE TRIGGER movie_genres_ad AFTER DELETE ON " + TABLE_MOVIES + " BEGIN " +
+                    "DELETE FROM " + GenreLinker.TABLE_MOVIE_GENRES +
+                    " WHERE movie_id=old." + COLUMN_MOVIE_ID + "; END";
+
+    // Per-user aggregates for the stats screen, kept current by triggers so reading
+    // them never scans movies. Zero-count year/genre rows are deleted.
+    private static final String TABLE_USER_STATS = "user_stats";
+    private static final String TABLE_USER_YEAR_STATS = "user_year_stats";
+    private static final String TABLE_USER_GENRE_STATS = "user_genre_stats";
+
+    private static final String CREATE_USER_STATS_TABLE =
+            "CREATE TABLE " + TABLE_USER_STATS + " (" +
+                    "user_id INTEGER PRIMARY KEY, " +
+                    "movie_count INTEGER NOT NULL DEFAULT 0, " +
+                    "review_count INTEGER NOT NULL DEFAULT 0" +
+                    ")";
+    private static final String CREATE_USER_YEAR_STATS_TABLE =
+            "CREATE TABLE " + TABLE_USER_YEAR_STATS + " (" +
+                    "user_id INTEGER NOT NULL, " +
+                    "year INTEGER NOT NULL, " +
+                    "movie_count INTEGER NOT NULL, " +
+                    "PRIMARY KEY (user_id, year)" +
+                    ") WITHOUT ROWID";
+    private static final String CREATE_USER_GENRE_STATS_TABLE =
+            "CREATE TABLE " + TABLE_USER_GENRE_STATS + " (" +
+                    "user_id INTEGER NOT NULL, " +
+                    "genre_id INTEGER NOT NULL, " +
+                    "movie_count INTEGER NOT NULL, " +
+                    "PRIMARY KEY (user_id, genre_id)" +
+                    ") WITHOUT ROWID";
+
+    // 1 if the row has a review, else 0 (prefix with old. or new.)
+    private static String hasReview(String row) {
+        return "(length(trim(ifnull(" + row + "." + COLUMN_REVIEW + ", '')))>0)";
+    }
+
+    // Statements counting a movie row in (sign "+") or out (sign "-") of the aggregates
+    private static String countMovie(String row, String sign) {
+        String user = row + "." + COLUMN_USER_ID_FK;
+        String year = row + "." + COLUMN_YEAR;
+        if (sign.equals("+")) {
+            return "INSERT OR IGNORE INTO " + TABLE_USER_STATS + " (user_id) VALUES (" + user + "); " +
+                    "UPDATE " + TABLE_USER_STATS + " SET movie_count=movie_count+1, " +
+                    "review_count=review_count+" + hasReview(row) + " WHERE user_id=" + user + "; " +
+                    "INSERT OR IGNORE INTO " + TABLE_USER_YEAR_STATS + " VALUES (" + user + ", " + year + ", 0); " +
+                    "UPDATE " + TABLE_USER_YEAR_STATS + " SET movie_count=movie_count+1" +
+                    " WHERE user_id=" + user + " AND year=" + year + "; ";
+        }
+        return "UPDATE " + TABLE_USER_STATS + " SET movie_count=movie_count-1, " +
+                "review_count=review_count-" + hasReview(row) + " WHERE user_id=" + user + "; " +
+                "UPDATE " + TABLE_USER_YEAR_STATS + " SET movie_count=movie_count-1" +
+                " WHERE user_id=" + user + " AND year=" + year + "; " +
+                "DELETE FROM " + TABLE_USER_YEAR_STATS +
+                " WHERE user_id=" + user + " AND year=" + year + " AND movie_count=0; ";
+    }
+
+    // Genre counts follow movie_genres, which GenreLinker rewrites on every save
+    private static final String[] CREATE_USER_STATS_TRIGGERS = {
+            "CREATE TRIGGER user_stats_ai AFTER INSERT ON " + TABLE_MOVIES + " BEGIN " +
+                    countMovie("new", "+") + "END",
+            "CREATE TRIGGER user_stats_ad AFTER DELETE ON " + TABLE_MOVIES + " BEGIN " +
+                    countMovie("old", "-") + "END",
+            "CREATE TRIGGER user_stats_au AFTER UPDATE OF " + COLUMN_YEAR + ", " + COLUMN_REVIEW + ", " +
+                    COLUMN_USER_ID_FK + " ON " + TABLE_MOVIES + " BEGIN " +
+                    countMovie("old", "-") + countMovie("new", "+") + "END",
+            "CREATE TRIGGER user_genre_stats_ai AFTER INSERT ON " + GenreLinker.TABLE_MOVIE_GENRES + " BEGIN " +
+                    "INSERT OR IGNORE INTO " + TABLE_USER_GENRE_STATS + " VALUES (new.user_id, new.genre_id, 0); " +
+                    "UPDATE " + TABLE_USER_GENRE_STATS + " SET movie_count=movie_count+1" +
+                    " WHERE user_id=new.user_id AND genre_id=new.genre_id; END",
+            "CREATE TRIGGER user_genre_stats_ad AFTER DELETE ON " + GenreLinker.TABLE_MOVIE_GENRES + " BEGIN " +
+                    "UPDATE " + TABLE_USER_GENRE_STATS + " SET movie_count=movie_count-1" +
+                    " WHERE user_id=old.user_id AND genre_id=old.genre_id; " +
+                    "DELETE FROM " + TABLE_USER_GENRE_STATS +
+                    " WHERE user_id=old.user_id AND genre_id=old.genre_id AND movie_count=0; END"
+    };
+
+    // v9: tombstoned movies drop out of every aggregate but keep their genre links,
+    // so undo only has to clear deleted_at. Genre links are now removed BEFORE the
+    // movie row, so the genre counters can still see whether it was live.
+    private static final String[] DROP_PRE_TOMBSTONE_TRIGGERS = {
+            "DROP TRIGGER IF EXISTS user_stats_ai",
+            "DROP TRIGGER IF EXISTS user_stats_ad",
+            "DROP TRIGGER IF EXISTS user_stats_au",
+            "DROP TRIGGER IF EXISTS user_genre_stats_ai",
+            "DROP TRIGGER IF EXISTS user_genre_stats_ad",
+            "DROP TRIGGER IF EXISTS movie_genres_ad",
+            "DROP TRIGGER IF EXISTS movies_fts_bu",
+            "DROP TRIGGER IF EXISTS movies_fts_au"
+    };
+
+    // True while the link's movie exists and isn't tombstoned (prefix old. or new.)
+    private static String liveMovie(String row) {
+        return "EXISTS (SELECT 1 FROM " + TABLE_MOVIES + " WHERE " + COLUMN_MOVIE_ID + "=" + row +
+                ".movie_id AND " + LIVE + ")";
+    }
+
+    private static final String[] CREATE_TOMBSTONE_TRIGGERS = {
+            "CREATE TRIGGER movie_genres_bd BEFORE DELETE ON " + TABLE_MOVIES + " BEGIN " +
+                    "DELETE FROM " + GenreLinker.TABLE_MOVIE_GENRES +
+                    " WHERE movie_id=old." + COLUMN_MOVIE_ID + "; END",
+            "CREATE TRIGGER user_stats_ai AFTER INSERT ON " + TABLE_MOVIES +
+                    " WHEN new." + LIVE + " BEGIN " + countMovie("new", "+") + "END",
+            "CREATE TRIGGER user_stats_ad AFTER DELETE ON " + TABLE_MOVIES +
+                    " WHEN old." + LIVE + " BEGIN " + countMovie("old", "-") + "END",
+            "CREATE TRIGGER user_stats_au_old AFTER UPDATE OF " + COLUMN_YEAR + ", " + COLUMN_REVIEW + ", " +
+                    COLUMN_USER_ID_FK + ", " + COLUMN_DELETED_AT + " ON " + TABLE_MOVIES +
+                    " WHEN old." + LIVE + " BEGIN " + countMovie("old", "-") + "END",
+            "CREATE TRIGGER user_stats_au_new AFTER UPDATE OF " + COLUMN_YEAR + ", " + COLUMN_REVIEW + ", " +
+                    COLUMN_USER_ID_FK + ", " + COLUMN_DELETED_AT + " ON " + TABLE_MOVIES +
+                    " WHEN new." + LIVE + " BEGIN " + countMovie("new", "+") + "END",
+            "CREATE TRIGGER user_genre_stats_ai AFTER INSERT ON " + GenreLinker.TABLE_MOVIE_GENRES +
+                    " WHEN " + liveMovie("new") + " BEGIN " +
+                    "INSERT OR IGNORE INTO " + TABLE_USER_GENRE_STATS + " VALUES (new.user_id, new.genre_id, 0); " +
+                    "UPDATE " + TABLE_USER_GENRE_STATS + " SET movie_count=movie_count+1" +
+                    " WHERE user_id=new.user_id AND genre_id=new.genre_id; END",
+            "CREATE TRIGGER user_genre_stats_ad AFTER DELETE ON " + GenreLinker.TABLE_MOVIE_GENRES +
+                    " WHEN " + liveMovie("old") + " BEGIN " +
+                    "UPDATE " + TABLE_USER_GENRE_STATS + " SET movie_count=movie_count-1" +
+                    " WHERE user_id=old.user_id AND genre_id=old.genre_id; " +
+                    "DELETE FROM " + TABLE_USER_GENRE_STATS +
+                    " WHERE user_id=old.user_id AND genre_id=old.genre_id AND movie_count=0; END",
+            "CREATE TRIGGER user_genre_stats_trash AFTER UPDATE OF " + COLUMN_DELETED_AT + " ON " + TABLE_MOVIES +
+                    " WHEN old." + LIVE + " AND new." + COLUMN_DELETED_AT + " IS NOT NULL BEGIN " +
+                    "UPDATE " + TABLE_USER_GENRE_STATS + " SET movie_count=movie_count-1" +
+                    " WHERE user_id=old." + COLUMN_USER_ID_FK + " AND genre_id IN (SELECT genre_id FROM " +
+                    GenreLinker.TABLE_MOVIE_GENRES + " WHERE movie_id=old." + COLUMN_MOVIE_ID + "); " +
+                    "DELETE FROM " + TABLE_USER_GENRE_STATS +
+                    " WHERE user_id=old." + COLUMN_USER_ID_FK + " AND movie_count=0; END",
+            "CREATE TRIGGER user_genre_stats_restore AFTER UPDATE OF " + COLUMN_DELETED_AT + " ON " + TABLE_MOVIES +
+                    " WHEN old." + COLUMN_DELETED_AT + " IS NOT NULL AND new." + LIVE + " BEGIN " +
+                    "INSERT OR IGNORE INTO " + TABLE_USER_GENRE_STATS + " SELECT user_id, genre_id, 0 FROM " +
+                    GenreLinker.TABLE_MOVIE_GENRES + " WHERE movie_id=new." + COLUMN_MOVIE_ID + "; " +
+                    "UPDATE " + TABLE_USER_GENRE_STATS + " SET movie_count=movie_count+1" +
+                    " WHERE user_id=new." + COLUMN_USER_ID_FK + " AND genre_id IN (SELECT genre_id FROM " +
+                    GenreLinker.TABLE_MOVIE_GENRES + " WHERE movie_id=new." + COLUMN_MOVIE_ID + "); END",
+            // Only text edits touch the search index (deleting/restoring no longer rewrites it)
+            "CREATE TRIGGER movies_fts_bu BEFORE UPDATE OF " + COLUMN_TITLE + ", " + COLUMN_GENRE + ", " +
+                    COLUMN_REVIEW + " ON " + TABLE_MOVIES + " BEGIN " +
+                    "DELETE FROM " + TABLE_MOVIES_FTS + " WHERE docid=old." + COLUMN_MOVIE_ID + "; END",
+            "CREATE TRIGGER movies_fts_au AFTER UPDATE OF " + COLUMN_TITLE + ", " + COLUMN_GENRE + ", " +
+                    COLUMN_REVIEW + " ON " + TABLE_MOVIES + " BEGIN " +
+                    "INSERT INTO " + TABLE_MOVIES_FTS + "(docid, " + COLUMN_TITLE + ", " +
+                    COLUMN_GENRE + ", " + COLUMN_REVIEW + ") VALUES(new." + COLUMN_MOVIE_ID +
+                    ", new." + COLUMN_TITLE + ", new." + COLUMN_GENRE + ", new." + COLUMN_REVIEW + "); END"
+    };
+
+    // Tombstones are few, so a partial index finds them without growing the table's indexes
+    private static final String CREATE_MOVIES_DELETED_INDEX =
+            "CREATE INDEX IF NOT EXISTS idx_movies_deleted ON " + TABLE_MOVIES +
+                    "(" + COLUMN_DELETED_AT + ") WHERE " + COLUMN_DELETED_AT + " IS NOT NULL";
+
+    // Tombstones older than this are purged; well past the list's undo window
+    static final long TOMBSTONE_TTL_MILLIS = 60_000;
+
+    // Older SQLite builds allow 999 bound parameters per statement; IN lists stay well below
+    static final int MAX_IN_ARGS = 500;
+
+    // Login and movie list queries (package-private so tests can EXPLAIN them)
+
+    // "username=? OR email=?" can only use one index, so each column gets its own
+    // lookup on its UNIQUE index; usernames are checked first
+    static final String SQL_USER_BY_LOGIN =
+            "SELECT " + COLUMN_ID + ", " + COLUMN_USERNAME + ", " + COLUMN_EMAIL + ", " +
+                    COLUMN_FULL_NAME + ", " + COLUMN_PASSWORD + " FROM " + TABLE_USERS +
+                    " WHERE " + COLUMN_USERNAME + "=?" +
+                    " UNION ALL SELECT " + COLUMN_ID + ", " + COLUMN_USERNAME + ", " +
+                    COLUMN_EMAIL + ", " + COLUMN_FULL_NAME + ", " + COLUMN_PASSWORD +
+                    " FROM " + TABLE_USERS + " WHERE " + COLUMN_EMAIL + "=?" +
+                    " LIMIT 1";
+
+    // Genre facets: the user's rows of the maintained counts, one per genre
+    static final String SQL_GENRE_COUNTS =
+            "SELECT s.genre_id, g.name, s.movie_count FROM " + TABLE_USER_GENRE_STATS + " s" +
+                    " JOIN " + GenreLinker.TABLE_USER_GENRES + " g" +
+                    " ON g.user_id=s.user_id AND g.genre_id=s.genre_id" +
+                    " WHERE s.user_id=?";
+    static final String SQL_USER_TOTALS =
+            "SELECT movie_count, review_count FROM " + TABLE_USER_STATS + " WHERE user_id=?";
+    static final String SQL_YEAR_COUNTS =
+            "SELECT year, movie_count FROM " + TABLE_USER_YEAR_STATS +
+                    " WHERE user_id=? ORDER BY year";
+
+    // List rows carry at most this many characters of the review, so long reviews don't
+    // fill the CursorWindow and the heap; getMovie() loads the whole row
+    static final int REVIEW_SNIPPET_LENGTH = 200;
+    // 1 when a list row's review was cut to REVIEW_SNIPPET_LENGTH
+    static final String COLUMN_REVIEW_TRUNCATED = "review_truncated";
+
+    // Every column a Movie has, for single-row reads and the export
+    private static final String MOVIE_COLUMNS =
+            COLUMN_MOVIE_ID + ", " + COLUMN_TITLE + ", " + COLUMN_GENRE + ", " +
+                    COLUMN_YEAR + ", " + COLUMN_REVIEW;
+    static final String MOVIE_LIST_COLUMNS = listColumns("");
+
+    static final String SQL_MOVIE_BY_ID =
+            "SELECT " + MOVIE_COLUMNS + " FROM " + TABLE_MOVIES +
+                    " WHERE " + COLUMN_MOVIE_ID + "=? AND " + LIVE;
+    // Ordered, or the planner is free to walk any (user_id, ...) index and return year order
+    static final String SQL_MOVIES_BY_USER =
+            "SELECT " + MOVIE_LIST_COLUMNS + " FROM " + TABLE_MOVIES +
+                    " WHERE " + COLUMN_USER_ID_FK + "=? AND " + LIVE +
+                    " ORDER BY " + COLUMN_MOVIE_ID;
+    static final String SQL_MOVIES_FOR_EXPORT =
+            "SELECT " + MOVIE_COLUMNS + " FROM " + TABLE_MOVIES +
+                    " WHERE " + COLUMN_USER_ID_FK + "=? AND " + LIVE;
+    static final String SQL_MOVIES_PAGE =
+            "SELECT " + MOVIE_LIST_COLUMNS + " FROM " + TABLE_MOVIES +
+                    " WHERE " + COLUMN_USER_ID_FK + "=? AND " + LIVE + " AND " + COLUMN_MOVIE_ID + ">?" +
+                    " ORDER BY " + COLUMN_MOVIE_ID +
+                    " LIMIT ?";
+
+    // 🔥 IMPORTANT: schema changes go here as a new step, never edit an old one
+    // v3 = users + movies (baseline), v4 = search index, v5 = user indexes,
+    // v6 = year/genre sort indexes, v7 = normalised genres, v8 = per-user stats,
+    // v9 = soft delete (tombstones), v10 = per-user genre names
+    static final SchemaMigrator MIGRATIONS = new SchemaMigrator(3)
+            .add(4, db -> {
+                createSearchIndex(db);
+                db.execSQL("INSERT INTO " + TABLE_MOVIES_FTS + "(" + TABLE_MOVIES_FTS + ") VALUES('rebuild')");
+            })
+            .add(5, db -> {
+                db.execSQL(CREATE_MOVIES_USER_INDEX);
+                db.execSQL(CREATE_MOVIES_USER_TITLE_INDEX);
+            })
+            .add(6, db -> {
+                db.execSQL(CREATE_MOVIES_USER_YEAR_INDEX);
+                db.execSQL(CREATE_MOVIES_USER_GENRE_INDEX);
+            })
+            .add(7, db -> {
+                db.execSQL(CREATE_GENRES_TABLE);
+                db.execSQL(CREATE_MOVIE_GENRES_TABLE);
+                db.execSQL(CREATE_MOVIE_GENRES_USER_INDEX);
+                db.execSQL(CREATE_MOVIE_GENRES_DELETE_TRIGGER);
+                normalizeGenres(db);
+            })
+            .add(8, db -> {
+                db.execSQL(CREATE_USER_STATS_TABLE);
+                db.execSQL(CREATE_USER_YEAR_STATS_TABLE);
+                db.execSQL(CREATE_USER_GENRE_STATS_TABLE);
+                for (String trigger : CREATE_USER_STATS_TRIGGERS) {
+                    db.execSQL(trigger);
+                }
+                // Existing rows are counted once here; triggers keep it current from now on
+                db.execSQL("INSERT INTO " + TABLE_USER_STATS + " SELECT " + COLUMN_USER_ID_FK +
+                        ", COUNT(*), SUM" + hasReview(TABLE_MOVIES) + " FROM " + TABLE_MOVIES +
+                        " GROUP BY " + COLUMN_USER_ID_FK);
+                db.execSQL("INSERT INTO " + TABLE_USER_YEAR_STATS + " SELECT " + COLUMN_USER_ID_FK +
+                        ", " + COLUMN_YEAR + ", COUNT(*) FROM " + TABLE_MOVIES +
+                        " GROUP BY " + COLUMN_USER_ID_FK + ", " + COLUMN_YEAR);
+                db.execSQL("INSERT INTO " + TABLE_USER_GENRE_STATS + " SELECT user_id, genre_id, COUNT(*)" +
+                        " FROM " + GenreLinker.TABLE_MOVIE_GENRES + " GROUP BY user_id, genre_id");
+            })
+            .add(9, db -> {
+                db.execSQL("ALTER TABLE " + TABLE_MOVIES + " ADD COLUMN " + COLUMN_DELETED_AT + " INTEGER");
+                db.execSQL(CREATE_MOVIES_DELETED_INDEX);
+                for (String trigger : DROP_PRE_TOMBSTONE_TRIGGERS) {
+                    db.execSQL(trigger);
+                }
+                for (String trigger : CREATE_TOMBSTONE_TRIGGERS) {
+                    db.execSQL(trigger);
+                }
+            })
+            .add(10, db -> {
+                db.execSQL(CREATE_USER_GENRES_TABLE);
+                // Until now every user saw the shared name, so that is what they keep
+                db.execSQL("INSERT INTO " + GenreLinker.TABLE_USER_GENRES +
+                        " SELECT DISTINCT mg.user_id, mg.genre_id, g.name FROM " +
+                        GenreLinker.TABLE_MOVIE_GENRES + " mg JOIN " + GenreLinker.TABLE_GENRES +
+                        " g ON g.genre_id=mg.genre_id");
+            });
+
+    private static final int DATABASE_VERSION = MIGRATIONS.latestVersion();
+
+    // Aim for this much CPU per password hash on the current device
+    private static final long TARGET_HASH_MILLIS = 250;
+
+    private static DatabaseHelper instance;
+    private volatile PasswordHasher passwordHasher;
+    // Guards the one-time calibration; not the helper's own monitor, which
+    // getReadableDatabase/getWritableDatabase/close also take
+    private final Object hasherLock = new Object();
+    // Told about every committed movie write
+    private final MovieChangeBus changeBus = new MovieChangeBus();
+    // Held by movie writes from beginTransaction until their change is published, so
+    // listeners get changes in commit order (SQLite runs one writer at a time anyway)
+    private final Object writeLock = new Object();
+    // Per-method latency and slow-query log (off unless enabled)
+    private final QueryMetrics metrics = new QueryMetrics();
+    // Shared helper in a release build: onOpen checks the metrics opt-in through it
+    private Context optInContext;
+
+    // Release builds record query timings only after the metrics screen switched them on
+    private static final String PREF_DIAGNOSTICS = "CineStackDiagnostics";
+    private static final String KEY_RECORD_QUERY_METRICS = "recordQueryMetrics";
+
+    /**
+     * Process-wide helper, so every screen shares one long-lived connection
+     * @param context Any context, the application context is kept
+     */
+    public static synchronized DatabaseHelper getInstance(Context context) {
+        if (instance == null) {
+            instance = new DatabaseHelper(context.getApplicationContext());
+            // Query timings are collected in debuggable builds; the metrics screen can toggle them.
+            // Release builds check the persisted opt-in in onOpen, off the main thread.
+            boolean debuggable = (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+            instance.metrics.setEnabled(debuggable);
+            if (!debuggable) instance.optInContext = context.getApplicationContext();
+        }
+        return instance;
+    }
+
+    // Use getInstance(); only tests create their own helper
+    DatabaseHelper(Context context) {
+        this(context, DATABASE_NAME);
+    }
+
+    // Tests and benchmarks point this at a scratch file (or null for in-memory)
+    DatabaseHelper(Context context, String databaseName) {
+        super(context, databaseName, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        // WAL lets the list queries read while an insert/update is writing
+        db.enableWriteAheadLogging();
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        if (optInContext != null && isQueryMetricsOptedIn(optInContext)) {
+            metrics.setEnabled(true);
+        }
+        // Lazy purge: deletes that were never undone are removed on the next open
+        if (!db.isReadOnly()) {
+            long start = metrics.start();
+            int purged = purgeDeletedMovies(db, System.currentTimeMillis() - TOMBSTONE_TTL_MILLIS);
+            metrics.end(QueryMetrics.Operation.PURGE_DELETED_MOVIES, start, purged);
+        }
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
         db.execSQL(CREATE_USERS_TABLE);
         db.execSQL(CREATE_MOVIES_TABLE);
+        MIGRATIONS.migrate(db, MIGRATIONS.baselineVersion(), DATABASE_VERSION);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_MOVIES);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_USERS);
-        onCreate(db);
+        if (!MIGRATIONS.canMigrateFrom(oldVersion)) {
+            // Pre-baseline schema from early development builds, nothing worth keeping
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_USER_GENRE_STATS);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_USER_YEAR_STATS);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_USER_STATS);
+            db.execSQL("DROP TABLE IF EXISTS " + GenreLinker.TABLE_USER_GENRES);
+            db.execSQL("DROP TABLE IF EXISTS " + GenreLinker.TABLE_MOVIE_GENRES);
+            db.execSQL("DROP TABLE IF EXISTS " + GenreLinker.TABLE_GENRES);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_MOVIES);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_USERS);
+            onCreate(db);
+            return;
+        }
+
+        MIGRATIONS.migrate(db, oldVersion, newVersion);
+    }
+
+    private static void createSearchIndex(SQLiteDatabase db) {
+        db.execSQL(CREATE_MOVIES_FTS_TABLE);
+        for (String trigger : CREATE_MOVIES_FTS_TRIGGERS) {
+            db.execSQL(trigger);
+        }
     }
 
-    // 🔐 Hash password
-    private String hashPassword(String password) {
+    // Link every existing movie to genre rows, rewriting variant spellings to one form.
+    // Written out here rather than through GenreLinker, so this step keeps producing the
+    // v7 tables (shared genre names, no user_genres) however the linker changes later.
+    private static void normalizeGenres(SQLiteDatabase db) {
+        // normalized name -> genre_id and shared name, for the genres seen so far
+        Map<String, Long> genreIdsByKey = new HashMap<>();
+        Map<String, String> namesByKey = new HashMap<>();
+        SQLiteStatement insertLink = db.compileStatement(
+                "INSERT OR IGNORE INTO movie_genres (movie_id, genre_id, user_id) VALUES (?, ?, ?)");
+        Cursor cursor = db.rawQuery("SELECT " + COLUMN_MOVIE_ID + ", " + COLUMN_GENRE + ", " +
+                COLUMN_USER_ID_FK + " FROM " + TABLE_MOVIES + " ORDER BY " + COLUMN_MOVIE_ID, null);
         try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hashBytes = digest.digest(password.getBytes());
-
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hashBytes) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
+            while (cursor.moveToNext()) {
+                long movieId = cursor.getLong(0);
+                String genre = cursor.getString(1);
+                long userId = cursor.getLong(2);
+
+                // "Sci-Fi", "sci fi" and "SCI-FI" share the key "scifi"; "," and "/" separate genres
+                List<Long> genreIds = new ArrayList<>();
+                StringBuilder display = new StringBuilder();
+                for (String part : genre.split("[,/]")) {
+                    String name = part.trim();
+                    StringBuilder key = new StringBuilder(name.length());
+                    for (int i = 0; i < name.length(); i++) {
+                        if (Character.isLetterOrDigit(name.charAt(i))) key.append(name.charAt(i));
+                    }
+                    String normalized = key.toString().toLowerCase(Locale.ROOT);
+                    if (normalized.isEmpty()) continue;
+
+                    Long genreId = genreIdsByKey.get(normalized);
+                    if (genreId == null) {
+                        ContentValues values = new ContentValues();
+                        values.put("name", name);
+                        values.put("normalized_name", normalized);
+                        genreId = db.insertOrThrow("genres", null, values);
+                        genreIdsByKey.put(normalized, genreId);
+                        namesByKey.put(normalized, name);
+                    }
+                    if (genreIds.contains(genreId)) continue;
+
+                    genreIds.add(genreId);
+                    if (display.length() > 0) display.append(", ");
+                    display.append(namesByKey.get(normalized));
+                }
+
+                for (long genreId : genreIds) {
+                    insertLink.bindLong(1, movieId);
+                    insertLink.bindLong(2, genreId);
+                    insertLink.bindLong(3, userId);
+                    insertLink.executeInsert();
+                }
+
+                // Nothing recognisable (e.g. only punctuation): keep the text as typed
+                String stored = genreIds.isEmpty() ? genre.trim() : display.toString();
+                if (!stored.equals(genre)) {
+                    ContentValues values = new ContentValues();
+                    values.put(COLUMN_GENRE, stored);
+                    db.update(TABLE_MOVIES, values, COLUMN_MOVIE_ID + "=?",
+                            new String[]{String.valueOf(movieId)});
+                }
+            }
+        } finally {
+            cursor.close();
+            insertLink.close();
+        }
+    }
+
+    /**
+     * Change notifications for every insert, update, delete and restore of a movie
+     */
+    public MovieChangeBus getChangeBus() {
+        return changeBus;
+    }
+
+    /**
+     * Latency histograms and slow-query log for every query and write below
+     */
+    public QueryMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Whether query timings were switched on from the metrics screen (kept across restarts)
+     */
+    static boolean isQueryMetricsOptedIn(Context context) {
+        return context.getSharedPreferences(PREF_DIAGNOSTICS, Context.MODE_PRIVATE)
+                .getBoolean(KEY_RECORD_QUERY_METRICS, false);
+    }
+
+    static void setQueryMetricsOptedIn(Context context, boolean optedIn) {
+        context.getSharedPreferences(PREF_DIAGNOSTICS, Context.MODE_PRIVATE).edit()
+                .putBoolean(KEY_RECORD_QUERY_METRICS, optedIn)
+                .apply();
+    }
+
+    // rawQuery, timed; while timing, getCount() runs the query here so the time covers
+    // the scan (a cursor is otherwise filled lazily by its first move)
+    private Cursor query(QueryMetrics.Operation operation, SQLiteDatabase db, String sql,
+                         String[] args, CancellationSignal cancellationSignal) {
+        long start = metrics.start();
+        Cursor cursor = db.rawQuery(sql, args, cancellationSignal);
+        if (start != QueryMetrics.NOT_TIMING) {
+            int rows;
+            try {
+                rows = cursor.getCount();
+            } catch (RuntimeException e) {
+                // Cancelled mid-scan: the caller never sees this cursor
+                cursor.close();
+                throw e;
             }
-            return hexString.toString();
+            metrics.end(operation, start, rows, db, sql, args);
+        }
+        return cursor;
+    }
 
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-            return null;
+    // 🔐 Password hashing, calibrated once per process on first use (always off the main thread)
+    private PasswordHasher getPasswordHasher() {
+        PasswordHasher hasher = passwordHasher;
+        if (hasher == null) {
+            synchronized (hasherLock) {
+                if (passwordHasher == null) {
+                    passwordHasher = new PasswordHasher(PasswordHasher.calibrate(TARGET_HASH_MILLIS));
+                }
+                hasher = passwordHasher;
+            }
         }
+        return hasher;
+    }
+
+    // Tests use a fixed, cheap iteration count instead of calibrating
+    void setPasswordHasher(PasswordHasher passwordHasher) {
+        this.passwordHasher = passwordHasher;
     }
 
     private String getCurrentTimestamp() {
@@ -107,8 +665,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
         SQLiteDatabase db = this.getWritableDatabase();
 
-        String hashedPassword = hashPassword(password);
-        if (hashedPassword == null) return false;
+        String hashedPassword = getPasswordHasher().hash(password);
 
         ContentValues values = new ContentValues();
         values.put(COLUMN_USERNAME, username.toLowerCase().trim());
@@ -117,66 +674,81 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(COLUMN_FULL_NAME, fullName.trim());
         values.put(COLUMN_CREATED_AT, getCurrentTimestamp());
 
+        // Timed without the (deliberately slow) password hash
+        long start = metrics.start();
         long result = db.insert(TABLE_USERS, null, values);
-        db.close();
+        metrics.end(QueryMetrics.Operation.REGISTER_USER, start, result != -1 ? 1 : 0);
 
         return result != -1;
     }
 
     public boolean loginUser(String username, String password) {
-
-        SQLiteDatabase db = this.getReadableDatabase();
-        String hashedPassword = hashPassword(password);
-
-        Cursor cursor = db.rawQuery(
-                "SELECT * FROM " + TABLE_USERS +
-                        " WHERE (" + COLUMN_USERNAME + "=? OR " + COLUMN_EMAIL + "=?) AND " +
-                        COLUMN_PASSWORD + "=?",
-                new String[]{username.toLowerCase().trim(),
-                        username.toLowerCase().trim(),
-                        hashedPassword});
-
-        boolean valid = cursor.getCount() > 0;
-        cursor.close();
-        db.close();
-        return valid;
+        return authenticate(username, password) != null;
     }
 
+    /**
+     * @return The user's id, or -1 if the credentials are invalid
+     */
     public int getUserId(String username, String password) {
+        User user = authenticate(username, password);
+        return user == null ? -1 : user.getId();
+    }
+
+    /**
+     * Look up an account by username or email and verify the password in Java
+     * Legacy SHA-256 rows (and rows hashed with fewer iterations) are rehashed
+     * with the current settings after a successful check.
+     *
+     * @param login Username or email
+     * @return The signed-in user, or null if the credentials are invalid
+     */
+    public User authenticate(String login, String password) {
 
         SQLiteDatabase db = this.getReadableDatabase();
-        String hashedPassword = hashPassword(password);
 
-        Cursor cursor = db.rawQuery(
-                "SELECT " + COLUMN_ID + " FROM " + TABLE_USERS +
-                        " WHERE (" + COLUMN_USERNAME + "=? OR " + COLUMN_EMAIL + "=?) AND " +
-                        COLUMN_PASSWORD + "=?",
-                new String[]{username.toLowerCase().trim(),
-                        username.toLowerCase().trim(),
-                        hashedPassword});
+        String key = login.toLowerCase().trim();
+        // Timed lookup only; the hash check below is slow by design
+        Cursor cursor = query(QueryMetrics.Operation.AUTHENTICATE, db,
+                SQL_USER_BY_LOGIN, new String[]{key, key}, null);
 
-        int userId = -1;
+        User user = null;
+        String storedHash = null;
         if (cursor.moveToFirst()) {
-            userId = cursor.getInt(0);
+            user = new User(cursor.getInt(0), cursor.getString(1),
+                    cursor.getString(2), cursor.getString(3));
+            storedHash = cursor.getString(4);
         }
-
         cursor.close();
-        db.close();
-        return userId;
+
+        PasswordHasher hasher = getPasswordHasher();
+        if (user == null) {
+            // Same hashing cost as a wrong password, so usernames can't be probed by timing
+            hasher.verifyUnknownUser(password);
+            return null;
+        }
+        if (!hasher.verify(password, storedHash)) return null;
+
+        if (hasher.needsRehash(storedHash)) {
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_PASSWORD, hasher.hash(password));
+            getWritableDatabase().update(TABLE_USERS, values,
+                    COLUMN_ID + "=?", new String[]{String.valueOf(user.getId())});
+        }
+
+        return user;
     }
+
     // ✅ Check if username already exists
     public boolean checkUsernameExists(String username) {
 
         SQLiteDatabase db = this.getReadableDatabase();
 
-        Cursor cursor = db.rawQuery(
+        Cursor cursor = query(QueryMetrics.Operation.CHECK_USERNAME, db,
                 "SELECT 1 FROM " + TABLE_USERS + " WHERE " + COLUMN_USERNAME + " = ?",
-                new String[]{username.toLowerCase().trim()}
-        );
+                new String[]{username.toLowerCase().trim()}, null);
 
         boolean exists = cursor.moveToFirst();
         cursor.close();
-        db.close();
 
         return exists;
     }
@@ -186,14 +758,12 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
         SQLiteDatabase db = this.getReadableDatabase();
 
-        Cursor cursor = db.rawQuery(
+        Cursor cursor = query(QueryMetrics.Operation.CHECK_EMAIL, db,
                 "SELECT 1 FROM " + TABLE_USERS + " WHERE " + COLUMN_EMAIL + " = ?",
-                new String[]{email.toLowerCase().trim()}
-        );
+                new String[]{email.toLowerCase().trim()}, null);
 
         boolean exists = cursor.moveToFirst();
         cursor.close();
-        db.close();
 
         return exists;
     }
@@ -201,71 +771,660 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     // ================= MOVIE METHODS =================
 
     public boolean insertMovie(String title, String genre, int year, String review, int userId) {
+        return insertMovieAndGetId(title, genre, year, review, userId) != -1;
+    }
 
-        SQLiteDatabase db = this.getWritableDatabase();
+    /**
+     * Insert a movie and link it to its (normalised) genres
+     * @return The new movie_id, or -1 if the insert failed
+     */
+    public long insertMovieAndGetId(String title, String genre, int year, String review, int userId) {
 
-        ContentValues values = new ContentValues();
-        values.put(COLUMN_TITLE, title.trim());
-        values.put(COLUMN_GENRE, genre.trim());
-        values.put(COLUMN_YEAR, year);
-        values.put(COLUMN_REVIEW, review.trim());
-        values.put(COLUMN_USER_ID_FK, userId);
+        synchronized (writeLock) {
+            long start = metrics.start();
+            SQLiteDatabase db = this.getWritableDatabase();
+            GenreLinker linker = new GenreLinker(db);
+            Movie stored = null;
 
-        long result = db.insert(TABLE_MOVIES, null, values);
-        db.close();
+            db.beginTransaction();
+            try {
+                GenreLinker.Resolved genres = linker.resolve(genre, userId);
 
-        return result != -1;
+                ContentValues values = new ContentValues();
+                values.put(COLUMN_TITLE, title.trim());
+                values.put(COLUMN_GENRE, genres.display);
+                values.put(COLUMN_YEAR, year);
+                values.put(COLUMN_REVIEW, review.trim());
+                values.put(COLUMN_USER_ID_FK, userId);
+
+                long movieId = db.insert(TABLE_MOVIES, null, values);
+                if (movieId != -1) {
+                    linker.link(movieId, userId, genres.genreIds);
+                    db.setTransactionSuccessful();
+                    stored = listRow((int) movieId, title.trim(), genres.display, year, review.trim());
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            } finally {
+                db.endTransaction();
+                linker.close();
+            }
+
+            metrics.end(QueryMetrics.Operation.INSERT_MOVIE, start, stored == null ? 0 : 1);
+            if (stored == null) return -1;
+            changeBus.publish(MovieChange.ofMovies(MovieChange.Type.INSERTED, userId,
+                    Collections.singletonList(stored)));
+            return stored.getId();
+        }
+    }
+
+    /**
+     * Insert many movies for one user in a single transaction
+     * Reuses one compiled INSERT statement, so each row is just a bind and execute.
+     * Either every row is inserted or none are.
+     *
+     * @return Number of rows inserted (0 if the batch failed)
+     */
+    public int insertMovies(List<Movie> movies, int userId) {
+
+        synchronized (writeLock) {
+            SQLiteDatabase db = this.getWritableDatabase();
+            SQLiteStatement statement = db.compileStatement(
+                    "INSERT INTO " + TABLE_MOVIES + " (" +
+                            COLUMN_TITLE + ", " + COLUMN_GENRE + ", " + COLUMN_YEAR + ", " +
+                            COLUMN_REVIEW + ", " + COLUMN_USER_ID_FK + ") VALUES (?, ?, ?, ?, ?)");
+            // Caches genre rows, so a batch looks each distinct genre up once
+            GenreLinker linker = new GenreLinker(db);
+
+            List<Movie> inserted = new ArrayList<>(movies.size());
+            long start = metrics.start();
+            db.beginTransaction();
+            try {
+                for (Movie movie : movies) {
+                    GenreLinker.Resolved genres = linker.resolve(movie.getGenre(), userId);
+                    String title = movie.getTitle().trim();
+                    String review = movie.getReview() == null ? "" : movie.getReview().trim();
+
+                    statement.clearBindings();
+                    statement.bindString(1, title);
+                    statement.bindString(2, genres.display);
+                    statement.bindLong(3, movie.getYear());
+                    statement.bindString(4, review);
+                    statement.bindLong(5, userId);
+
+                    long movieId = statement.executeInsert();
+                    if (movieId != -1) {
+                        linker.link(movieId, userId, genres.genreIds);
+                        inserted.add(listRow((int) movieId, title, genres.display, movie.getYear(), review));
+                    }
+                }
+                db.setTransactionSuccessful();
+            } catch (SQLException e) {
+                e.printStackTrace();
+                inserted.clear();
+            } finally {
+                db.endTransaction();
+                statement.close();
+                linker.close();
+            }
+
+            metrics.end(QueryMetrics.Operation.INSERT_MOVIES, start, inserted.size());
+            if (!inserted.isEmpty()) {
+                changeBus.publish(MovieChange.ofMovies(MovieChange.Type.INSERTED, userId, inserted));
+            }
+            return inserted.size();
+        }
+    }
+
+    /**
+     * @return The movie, or null if there is no movie with this id (or it was deleted)
+     */
+    public Movie getMovie(int movieId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        return MovieRowMapper.readFirst(query(QueryMetrics.Operation.GET_MOVIE, db,
+                SQL_MOVIE_BY_ID, new String[]{String.valueOf(movieId)}, null));
     }
 
+    // Primary key lookup inside a write transaction (untimed; the write is timed)
+    private static Movie getMovie(SQLiteDatabase db, int movieId) {
+        return MovieRowMapper.readFirst(db.rawQuery(SQL_MOVIE_BY_ID, new String[]{String.valueOf(movieId)}));
+    }
+
+    /**
+     * Every live movie of the user as list rows (reviews cut to REVIEW_SNIPPET_LENGTH),
+     * in the order they were added
+     */
     public Cursor getMoviesByUser(int userId) {
 
         SQLiteDatabase db = this.getReadableDatabase();
 
-        return db.rawQuery(
-                "SELECT * FROM " + TABLE_MOVIES +
-                        " WHERE " + COLUMN_USER_ID_FK + "=?",
-                new String[]{String.valueOf(userId)});
+        return query(QueryMetrics.Operation.GET_MOVIES_BY_USER, db,
+                SQL_MOVIES_BY_USER, new String[]{String.valueOf(userId)}, null);
+    }
+
+    /**
+     * Every live movie of the user with the complete review, for MovieExporter
+     * Not timed through query(): that counts the rows, which would step through the
+     * whole result before the export streams it. MovieExporter times the export instead.
+     */
+    public Cursor getMoviesForExport(int userId) {
+
+        SQLiteDatabase db = this.getReadableDatabase();
+
+        return db.rawQuery(SQL_MOVIES_FOR_EXPORT, new String[]{String.valueOf(userId)});
     }
 
+    /**
+     * Number of live movies the user has, from the trigger-maintained totals (no scan)
+     */
+    public int getMovieCount(int userId) {
+
+        SQLiteDatabase db = this.getReadableDatabase();
+
+        Cursor cursor = db.rawQuery(SQL_USER_TOTALS, new String[]{String.valueOf(userId)});
+        int movieCount = cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        cursor.close();
+
+        return movieCount;
+    }
+
+    // List row columns: the review is cut short and flagged (prefix is a table alias
+    // and dot, or empty)
+    private static String listColumns(String prefix) {
+        return prefix + COLUMN_MOVIE_ID + ", " + prefix + COLUMN_TITLE + ", " +
+                prefix + COLUMN_GENRE + ", " + prefix + COLUMN_YEAR + ", " +
+                "substr(" + prefix + COLUMN_REVIEW + ", 1, " + REVIEW_SNIPPET_LENGTH + ") AS " + COLUMN_REVIEW + ", " +
+                "length(" + prefix + COLUMN_REVIEW + ") > " + REVIEW_SNIPPET_LENGTH + " AS " + COLUMN_REVIEW_TRUNCATED;
+    }
+
+    // A written row as a list query would return it, for change notifications (the cache
+    // and the open list patch their list rows with it); same cut as substr()/length()
+    static Movie listRow(int movieId, String title, String genre, int year, String review) {
+        if (review == null || review.codePointCount(0, review.length()) <= REVIEW_SNIPPET_LENGTH) {
+            return new Movie(movieId, title, genre, year, review, false);
+        }
+        return new Movie(movieId, title, genre, year,
+                review.substring(0, review.offsetByCodePoints(0, REVIEW_SNIPPET_LENGTH)), true);
+    }
+
+    /**
+     * Keyset page of a user's movies, ordered by movie_id
+     * Seeks past the last row already shown instead of using OFFSET,
+     * so every page costs the same no matter how deep the list is
+     *
+     * @param afterMovieId movie_id of the last loaded row, or 0 for the first page
+     * @param limit Maximum number of rows to return
+     */
+    public Cursor getMoviesPage(int userId, int afterMovieId, int limit) {
+
+        SQLiteDatabase db = this.getReadableDatabase();
+
+        return query(QueryMetrics.Operation.GET_MOVIES_PAGE, db, SQL_MOVIES_PAGE,
+                new String[]{String.valueOf(userId),
+                        String.valueOf(afterMovieId),
+                        String.valueOf(limit)}, null);
+    }
+
+    /**
+     * Keyset page of a user's movies in the query's sort order, with its filters applied
+     *
+     * @param after Last loaded row (its sort value and movie_id are the page boundary),
+     *              or null for the first page
+     * @param limit Maximum number of rows to return
+     */
+    public Cursor queryMovies(int userId, MovieQuery query, Movie after, int limit) {
+
+        SQLiteDatabase db = this.getReadableDatabase();
+
+        SqlQuery sql = buildMovieQuery(userId, query, after, limit);
+        return query(QueryMetrics.Operation.QUERY_MOVIES, db, sql.sql, sql.args, null);
+    }
+
+    /**
+     * How many of the user's movies have each genre, sorted by genre name
+     * Genres the user has no movies in are left out.
+     */
+    public List<GenreCount> getGenreCounts(int userId) {
+
+        SQLiteDatabase db = this.getReadableDatabase();
+
+        Cursor cursor = query(QueryMetrics.Operation.GET_GENRE_COUNTS, db,
+                SQL_GENRE_COUNTS, new String[]{String.valueOf(userId)}, null);
+
+        List<GenreCount> counts = new ArrayList<>(cursor.getCount());
+        while (cursor.moveToNext()) {
+            counts.add(new GenreCount(cursor.getLong(0), cursor.getString(1), cursor.getInt(2)));
+        }
+        cursor.close();
+
+        // A handful of rows; sorted case-insensitively here rather than in SQL
+        Collections.sort(counts, (a, b) -> a.getName().compareToIgnoreCase(b.getName()));
+        return counts;
+    }
+
+    /**
+     * Totals and per-year/per-genre counts for the stats screen
+     * Reads the trigger-maintained summary tables: the cost depends on how many
+     * distinct years and genres the user has, not on how many movies.
+     */
+    public UserStats getUserStats(int userId) {
+
+        long start = metrics.start();
+        SQLiteDatabase db = this.getReadableDatabase();
+        String[] args = {String.valueOf(userId)};
+
+        int movieCount = 0;
+        int reviewCount = 0;
+        Cursor cursor = db.rawQuery(SQL_USER_TOTALS, args);
+        if (cursor.moveToFirst()) {
+            movieCount = cursor.getInt(0);
+            reviewCount = cursor.getInt(1);
+        }
+        cursor.close();
+
+        SortedMap<Integer, Integer> years = new TreeMap<>();
+        cursor = db.rawQuery(SQL_YEAR_COUNTS, args);
+        while (cursor.moveToNext()) {
+            years.put(cursor.getInt(0), cursor.getInt(1));
+        }
+        cursor.close();
+
+        // The genre facet query is timed on its own
+        metrics.end(QueryMetrics.Operation.GET_USER_STATS, start, 1 + years.size());
+
+        return new UserStats(movieCount, reviewCount, years, getGenreCounts(userId));
+    }
+
+    /**
+     * SQL text plus bound arguments
+     */
+    static final class SqlQuery {
+        final String sql;
+        final String[] args;
+
+        SqlQuery(String sql, String[] args) {
+            this.sql = sql;
+            this.args = args;
+        }
+    }
+
+    /**
+     * Build the SELECT for queryMovies (package-private so tests can EXPLAIN it)
+     * Every value is a bound parameter. The sort column is followed by movie_id in
+     * ORDER BY, which the (user_id, column) indexes already provide, and the page
+     * boundary is written as "col >= ? AND (col > ? OR movie_id > ?)" so the index
+     * range starts at the last row instead of at the user's first row.
+     */
+    static SqlQuery buildMovieQuery(int userId, MovieQuery query, Movie after, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT " + MOVIE_LIST_COLUMNS + " FROM " + TABLE_MOVIES +
+                " WHERE " + COLUMN_USER_ID_FK + "=? AND " + LIVE);
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(userId));
+
+        if (!query.getGenres().isEmpty()) {
+            // Matches through movie_genres, so "sci fi" finds movies filed as "Sci-Fi, Horror"
+            sql.append(" AND ").append(COLUMN_MOVIE_ID).append(" IN (SELECT movie_id FROM ")
+                    .append(GenreLinker.TABLE_MOVIE_GENRES).append(" WHERE user_id=? AND genre_id IN (")
+                    .append("SELECT genre_id FROM ").append(GenreLinker.TABLE_GENRES)
+                    .append(" WHERE normalized_name IN (");
+            args.add(String.valueOf(userId));
+            int first = args.size();
+            for (String genre : query.getGenres()) {
+                sql.append(args.size() > first ? ",?" : "?");
+                args.add(GenreLinker.normalize(genre));
+            }
+            sql.append(")))");
+        }
+        if (query.getMinYear() != null) {
+            sql.append(" AND ").append(COLUMN_YEAR).append(">=?");
+            args.add(String.valueOf(query.getMinYear()));
+        }
+        if (query.getMaxYear() != null) {
+            sql.append(" AND ").append(COLUMN_YEAR).append("<=?");
+            args.add(String.valueOf(query.getMaxYear()));
+        }
+
+        String column = sortColumn(query.getSort());
+        String direction = query.isDescending() ? " DESC" : "";
+        String past = query.isDescending() ? "<" : ">";
+
+        if (after != null) {
+            String afterId = String.valueOf(after.getId());
+            if (column.equals(COLUMN_MOVIE_ID)) {
+                sql.append(" AND ").append(COLUMN_MOVIE_ID).append(past).append('?');
+                args.add(afterId);
+            } else {
+                String afterValue = sortValue(query.getSort(), after);
+                sql.append(" AND ").append(column).append(past).append("=?")
+                        .append(" AND (").append(column).append(past).append("? OR ")
+                        .append(COLUMN_MOVIE_ID).append(past).append("?)");
+                args.add(afterValue);
+                args.add(afterValue);
+                args.add(afterId);
+            }
+        }
+
+        sql.append(" ORDER BY ");
+        if (!column.equals(COLUMN_MOVIE_ID)) sql.append(column).append(direction).append(", ");
+        sql.append(COLUMN_MOVIE_ID).append(direction).append(" LIMIT ?");
+        args.add(String.valueOf(limit));
+
+        return new SqlQuery(sql.toString(), args.toArray(new String[0]));
+    }
+
+    private static String sortColumn(MovieQuery.Sort sort) {
+        switch (sort) {
+            case TITLE: return COLUMN_TITLE;
+            case YEAR: return COLUMN_YEAR;
+            case GENRE: return COLUMN_GENRE;
+            default: return COLUMN_MOVIE_ID;
+        }
+    }
+
+    private static String sortValue(MovieQuery.Sort sort, Movie movie) {
+        switch (sort) {
+            case TITLE: return movie.getTitle();
+            case YEAR: return String.valueOf(movie.getYear());
+            case GENRE: return movie.getGenre();
+            default: return String.valueOf(movie.getId());
+        }
+    }
+
+    /**
+     * Delete a movie permanently, with no undo (the list uses softDeleteMovies)
+     */
     public boolean deleteMovie(int movieId) {
 
-        SQLiteDatabase db = this.getWritableDatabase();
-        int result = db.delete(TABLE_MOVIES,
-                COLUMN_MOVIE_ID + "=?",
-                new String[]{String.valueOf(movieId)});
-        db.close();
-        return result > 0;
+        synchronized (writeLock) {
+            long start = metrics.start();
+            SQLiteDatabase db = this.getWritableDatabase();
+            String[] args = {String.valueOf(movieId)};
+            int userId = -1;
+            int result;
+
+            db.beginTransaction();
+            try {
+                // Owner of a live row; a tombstoned row was already reported as deleted
+                Cursor cursor = db.rawQuery("SELECT " + COLUMN_USER_ID_FK + " FROM " + TABLE_MOVIES +
+                        " WHERE " + COLUMN_MOVIE_ID + "=? AND " + LIVE, args);
+                if (cursor.moveToFirst()) userId = cursor.getInt(0);
+                cursor.close();
+
+                result = db.delete(TABLE_MOVIES, COLUMN_MOVIE_ID + "=?", args);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            metrics.end(QueryMetrics.Operation.DELETE_MOVIE, start, result);
+
+            if (userId != -1) {
+                changeBus.publish(MovieChange.ofIds(MovieChange.Type.DELETED, userId,
+                        Collections.singletonList(movieId)));
+            }
+            return result > 0;
+        }
     }
 
-    public boolean updateMovie(int id, String title, String genre,
-                               String year, String review) {
+    /**
+     * Soft delete: tombstone the movies in one transaction
+     * They disappear from every list, search and count straight away, and can be
+     * brought back with restoreMovies() until they are purged.
+     *
+     * @return Number of movies deleted (already deleted ids are not counted),
+     *         or -1 if the transaction failed
+     */
+    public int softDeleteMovies(Collection<Integer> movieIds) {
+        return softDeleteMovies(movieIds, System.currentTimeMillis());
+    }
 
-        SQLiteDatabase db = this.getWritableDatabase();
+    // Visible for tests (controls the tombstone time)
+    int softDeleteMovies(Collection<Integer> movieIds, long now) {
 
-        ContentValues values = new ContentValues();
-        values.put(COLUMN_TITLE, title);
-        values.put(COLUMN_GENRE, genre);
-        values.put(COLUMN_YEAR, year);
-        values.put(COLUMN_REVIEW, review);
+        synchronized (writeLock) {
+            SQLiteDatabase db = this.getWritableDatabase();
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_DELETED_AT, now);
+            Map<Integer, List<Integer>> deleted = new TreeMap<>();
+            long start = metrics.start();
+
+            db.beginTransaction();
+            try {
+                // Purged rows were reported as deleted when they were tombstoned
+                purgeDeletedMovies(db, now - TOMBSTONE_TTL_MILLIS);
+                updateInChunks(db, values, LIVE, movieIds, deleted);
+                db.setTransactionSuccessful();
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return -1;
+            } finally {
+                db.endTransaction();
+            }
+
+            int count = publishIds(MovieChange.Type.DELETED, deleted);
+            metrics.end(QueryMetrics.Operation.SOFT_DELETE_MOVIES, start, count);
+            return count;
+        }
+    }
+
+    /**
+     * Undo softDeleteMovies() for movies that haven't been purged yet
+     * @return Number of movies restored, or -1 if the transaction failed
+     */
+    public int restoreMovies(Collection<Integer> movieIds) {
+
+        synchronized (writeLock) {
+            SQLiteDatabase db = this.getWritableDatabase();
+            ContentValues values = new ContentValues();
+            values.putNull(COLUMN_DELETED_AT);
+            Map<Integer, List<Integer>> restored = new TreeMap<>();
+            long start = metrics.start();
+
+            db.beginTransaction();
+            try {
+                updateInChunks(db, values, COLUMN_DELETED_AT + " IS NOT NULL", movieIds, restored);
+                db.setTransactionSuccessful();
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return -1;
+            } finally {
+                db.endTransaction();
+            }
+
+            int count = publishIds(MovieChange.Type.RESTORED, restored);
+            metrics.end(QueryMetrics.Operation.RESTORE_MOVIES, start, count);
+            return count;
+        }
+    }
+
+    /**
+     * Permanently remove movies tombstoned before the given time
+     * @return Number of movies removed
+     */
+    int purgeDeletedMovies(long deletedBefore) {
+        long start = metrics.start();
+        int purged = purgeDeletedMovies(this.getWritableDatabase(), deletedBefore);
+        metrics.end(QueryMetrics.Operation.PURGE_DELETED_MOVIES, start, purged);
+        return purged;
+    }
 
-        int result = db.update(TABLE_MOVIES,
-                values,
-                COLUMN_MOVIE_ID + "=?",
-                new String[]{String.valueOf(id)});
+    private static int purgeDeletedMovies(SQLiteDatabase db, long deletedBefore) {
+        return db.delete(TABLE_MOVIES,
+                COLUMN_DELETED_AT + " IS NOT NULL AND " + COLUMN_DELETED_AT + "<?",
+                new String[]{String.valueOf(deletedBefore)});
+    }
+
+    // "UPDATE ... WHERE condition AND movie_id IN (...)" in chunks of MAX_IN_ARGS ids;
+    // the ids that matched are collected per user for the change notification
+    private static void updateInChunks(SQLiteDatabase db, ContentValues values, String condition,
+                                       Collection<Integer> movieIds,
+                                       Map<Integer, List<Integer>> updatedByUser) {
+        List<Integer> ids = new ArrayList<>(movieIds);
+
+        for (int start = 0; start < ids.size(); start += MAX_IN_ARGS) {
+            int end = Math.min(start + MAX_IN_ARGS, ids.size());
+            String[] args = new String[end - start];
+            StringBuilder where = new StringBuilder(condition)
+                    .append(" AND ").append(COLUMN_MOVIE_ID).append(" IN (");
+            for (int i = start; i < end; i++) {
+                where.append(i > start ? ",?" : "?");
+                args[i - start] = String.valueOf(ids.get(i));
+            }
+            where.append(')');
 
-        db.close();
-        return result > 0;
+            // Primary key lookups, in the same transaction as the update
+            Cursor cursor = db.rawQuery("SELECT " + COLUMN_MOVIE_ID + ", " + COLUMN_USER_ID_FK +
+                    " FROM " + TABLE_MOVIES + " WHERE " + where, args);
+            while (cursor.moveToNext()) {
+                List<Integer> userIds = updatedByUser.get(cursor.getInt(1));
+                if (userIds == null) {
+                    userIds = new ArrayList<>();
+                    updatedByUser.put(cursor.getInt(1), userIds);
+                }
+                userIds.add(cursor.getInt(0));
+            }
+            cursor.close();
+
+            db.update(TABLE_MOVIES, values, where.toString(), args);
+        }
     }
 
+    // One change per user; returns how many movies changed in total
+    private int publishIds(MovieChange.Type type, Map<Integer, List<Integer>> movieIdsByUser) {
+        int count = 0;
+        for (Map.Entry<Integer, List<Integer>> entry : movieIdsByUser.entrySet()) {
+            changeBus.publish(MovieChange.ofIds(type, entry.getKey(), entry.getValue()));
+            count += entry.getValue().size();
+        }
+        return count;
+    }
+
+    /**
+     * Save an edited movie, writing only the columns that changed
+     * Unchanged columns are left out of the UPDATE, so their triggers (search index,
+     * stats) don't fire; if nothing changed nothing is written.
+     *
+     * @param edited The movie's id with its new values
+     * @return The row as now stored (trimmed, genre spelling normalised),
+     *         or null if the movie doesn't exist or the write failed
+     */
+    public Movie updateMovie(Movie edited) {
+
+        synchronized (writeLock) {
+            SQLiteDatabase db = this.getWritableDatabase();
+            GenreLinker linker = new GenreLinker(db);
+            Movie stored;
+            // Owner of the row, set only if something is written
+            int userId = -1;
+            long start = metrics.start();
+
+            db.beginTransaction();
+            try {
+                Movie current = getMovie(db, edited.getId());
+                if (current == null) return null;
+                // Genre spellings are the owner's
+                int owner = (int) DatabaseUtils.longForQuery(db,
+                        "SELECT " + COLUMN_USER_ID_FK + " FROM " + TABLE_MOVIES +
+                                " WHERE " + COLUMN_MOVIE_ID + "=?",
+                        new String[]{String.valueOf(edited.getId())});
+
+                String title = edited.getTitle().trim();
+                String review = edited.getReview() == null ? "" : edited.getReview().trim();
+                String genre = current.getGenre();
+                GenreLinker.Resolved genres = null;
+
+                ContentValues values = new ContentValues();
+                if (!title.equals(current.getTitle())) values.put(COLUMN_TITLE, title);
+                if (edited.getYear() != current.getYear()) values.put(COLUMN_YEAR, edited.getYear());
+                if (!review.equals(current.getReview())) values.put(COLUMN_REVIEW, review);
+                // "sci fi" typed over a stored "Sci-Fi" resolves to the same text: no change
+                if (!edited.getGenre().equals(current.getGenre())) {
+                    genres = linker.resolve(edited.getGenre(), owner);
+                    if (genres.display.equals(current.getGenre())) {
+                        genres = null;
+                    } else {
+                        genre = genres.display;
+                        values.put(COLUMN_GENRE, genre);
+                    }
+                }
+
+                if (values.size() > 0) {
+                    userId = owner;
+                    db.update(TABLE_MOVIES, values, COLUMN_MOVIE_ID + "=?",
+                            new String[]{String.valueOf(edited.getId())});
+                }
+                if (genres != null) {
+                    linker.link(edited.getId(), userId, genres.genreIds);
+                }
+                db.setTransactionSuccessful();
 
+                stored = new Movie(edited.getId(), title, genre, edited.getYear(), review);
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return null;
+            } finally {
+                db.endTransaction();
+                linker.close();
+            }
+
+            metrics.end(QueryMetrics.Operation.UPDATE_MOVIE, start, userId != -1 ? 1 : 0);
+
+            // Nothing written, nothing to report
+            if (userId != -1) {
+                changeBus.publish(MovieChange.ofMovies(MovieChange.Type.UPDATED, userId,
+                        Collections.singletonList(listRow(stored.getId(), stored.getTitle(),
+                                stored.getGenre(), stored.getYear(), stored.getReview()))));
+            }
+            return stored;
+        }
+    }
+
+    /**
+     * Full-text search over title, genre and review
+     * Every word in the keyword is prefix-matched ("ali sci" finds "Alien", "Sci-Fi").
+     * Rows whose title matches come first, then rows with more matching words.
+     * A keyword with no searchable words returns the whole list.
+     */
     public Cursor searchMovies(int userId, String keyword) {
+        return searchMovies(userId, keyword, null);
+    }
+
+    /**
+     * Same as searchMovies(int, String), but the query can be abandoned mid-scan
+     * @param cancellationSignal Signal that aborts the query, may be null
+     */
+    public Cursor searchMovies(int userId, String keyword, CancellationSignal cancellationSignal) {
+
+        String[] terms = keyword.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+");
+        StringBuilder anyColumn = new StringBuilder();
+        StringBuilder titleOnly = new StringBuilder();
+
+        for (String term : terms) {
+            if (term.isEmpty()) continue;
+            if (anyColumn.length() > 0) {
+                anyColumn.append(' ');
+                titleOnly.append(' ');
+            }
+            anyColumn.append(term).append('*');
+            titleOnly.append(COLUMN_TITLE).append(':').append(term).append('*');
+        }
+
+        if (anyColumn.length() == 0) {
+            return getMoviesByUser(userId);
+        }
 
         SQLiteDatabase db = this.getReadableDatabase();
 
-        return db.rawQuery(
-                "SELECT * FROM " + TABLE_MOVIES +
-                        " WHERE " + COLUMN_USER_ID_FK + "=? AND " + COLUMN_TITLE + " LIKE ?",
-                new String[]{String.valueOf(userId), "%" + keyword + "%"}
+        return query(QueryMetrics.Operation.SEARCH_MOVIES, db,
+                "SELECT " + listColumns("m.") + " FROM " + TABLE_MOVIES_FTS +
+                        " JOIN " + TABLE_MOVIES + " m ON m." + COLUMN_MOVIE_ID + "=" + TABLE_MOVIES_FTS + ".docid" +
+                        " WHERE " + TABLE_MOVIES_FTS + " MATCH ? AND m." + COLUMN_USER_ID_FK + "=?" +
+                        " AND m." + LIVE +
+                        " ORDER BY m." + COLUMN_MOVIE_ID + " IN (SELECT docid FROM " + TABLE_MOVIES_FTS +
+                        " WHERE " + TABLE_MOVIES_FTS + " MATCH ?) DESC," +
+                        " length(offsets(" + TABLE_MOVIES_FTS + ")) DESC," +
+                        " m." + COLUMN_TITLE,
+                new String[]{anyColumn.toString(), String.valueOf(userId), titleOnly.toString()},
+                cancellationSignal
         );
     }
-}
\ No newline at end of file
+}
@@ -7,12 +7,20 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
+/**
+ * EditMovieActivity - Edit one movie
+ * Started with just the movie id; the row is loaded through the repository,
+ * which usually finds it in the list cache without a query.
+ */
 public class EditMovieActivity extends AppCompatActivity {
 
+    // Intent extra: movie_id of the movie to edit
+    public static final String EXTRA_MOVIE_ID = "movie_id";
+
     EditText etTitle, etGenre, etYear, etReview;
     Button btnUpdate;
 
-    DatabaseHelper databaseHelper;
+    MovieRepository movieRepository;
     int movieId;
 
     @Override
@@ -26,29 +34,61 @@ public class EditMovieActivity extends AppCompatActivity {
         etReview = findViewById(R.id.etReview);
         btnUpdate = findViewById(R.id.btnSave);
 
-        databaseHelper = new DatabaseHelper(this);
+        movieRepository = new MovieRepository(this);
+        movieId = getIntent().getIntExtra(EXTRA_MOVIE_ID, -1);
 
-        // Get data from intent
-        movieId = getIntent().getIntExtra("id", -1);
-        etTitle.setText(getIntent().getStringExtra("title"));
-        etGenre.setText(getIntent().getStringExtra("genre"));
-        etYear.setText(getIntent().getStringExtra("year"));
-        etReview.setText(getIntent().getStringExtra("review"));
+        btnUpdate.setOnClickListener(v -> saveMovie());
 
-        btnUpdate.setOnClickListener(v -> {
+        // Fields restored after rotation are newer than the stored row
+        // (title is required, so an empty one means the row never loaded)
+        if (savedInstanceState == null || etTitle.getText().length() == 0) {
+            loadMovie();
+        }
+    }
 
-            boolean updated = databaseHelper.updateMovie(
-                    movieId,
-                    etTitle.getText().toString(),
-                    etGenre.getText().toString(),
-                    etYear.getText().toString(),
-                    etReview.getText().toString()
-            );
+    private void loadMovie() {
+        btnUpdate.setEnabled(false);
 
-            if (updated) {
-                Toast.makeText(this, "Movie Updated", Toast.LENGTH_SHORT).show();
+        movieRepository.getMovie(movieId, movie -> {
+            if (movie == null) {
+                Toast.makeText(this, "Movie not found", Toast.LENGTH_SHORT).show();
                 finish();
+                return;
             }
+
+            etTitle.setText(movie.getTitle());
+            etGenre.setText(movie.getGenre());
+            etYear.setText(String.valueOf(movie.getYear()));
+            etReview.setText(movie.getReview());
+            btnUpdate.setEnabled(true);
         });
     }
-}
\ No newline at end of file
+
+    private void saveMovie() {
+
+        String title = etTitle.getText().toString().trim();
+        String genre = etGenre.getText().toString().trim();
+        String yearStr = etYear.getText().toString().trim();
+        String review = etReview.getText().toString().trim();
+
+        if (title.isEmpty() || genre.isEmpty() || yearStr.isEmpty()) {
+            Toast.makeText(this, "Please fill all required fields", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        btnUpdate.setEnabled(false);
+
+        movieRepository.updateMovie(
+                new Movie(movieId, title, genre, Integer.parseInt(yearStr), review),
+                updated -> {
+                    if (updated != null) {
+                        Toast.makeText(this, "Movie Updated", Toast.LENGTH_SHORT).show();
+                        finish();
+                    } else {
+                        btnUpdate.setEnabled(true);
+                        Toast.makeText(this, "Failed to update movie", Toast.LENGTH_SHORT).show();
+                    }
+                }
+        );
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.cinestack;
+
+/**
+ * GenreCount - One genre facet: how many of a user's movies have the genre
+ */
+public class GenreCount {
+
+    private final long genreId;
+    private final String name;
+    private final int count;
+
+    public GenreCount(long genreId, String name, int count) {
+        this.genreId = genreId;
+        this.name = name;
+        this.count = count;
+    }
+
+    public long getGenreId() { return genreId; }
+    public String getName() { return name; }
+    public int getCount() { return count; }
+}
@@ -0,0 +1,184 @@
+package com.example.cinestack;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * GenreLinker - Maps the free-text genre field onto the genres/movie_genres tables
+ * "Sci-Fi", "sci fi" and "SCI-FI" all normalise to the same key ("scifi") and so
+ * to one genre row. Display names are per user (user_genres): the spelling a user
+ * first stores becomes the name their movies and facets show, whatever other users
+ * typed. A field may hold several genres separated by "," or "/".
+ *
+ * One linker per transaction: it caches genre rows it has seen, which makes
+ * batch inserts cheap. Call close() when done.
+ */
+final class GenreLinker {
+
+    static final String TABLE_GENRES = "genres";
+    static final String TABLE_MOVIE_GENRES = "movie_genres";
+    static final String TABLE_USER_GENRES = "user_genres";
+
+    private static final String SEPARATORS = "[,/]";
+
+    private final SQLiteDatabase db;
+    private final SQLiteStatement deleteLinks;
+    private final SQLiteStatement insertLink;
+    // normalized name -> genre row
+    private final Map<String, Genre> genres = new HashMap<>();
+    // "userId:genreId" -> that user's display name
+    private final Map<String, String> userNames = new HashMap<>();
+
+    /**
+     * Genres resolved from one genre field
+     */
+    static final class Resolved {
+        // Canonical text to store in movies.genre
+        final String display;
+        final long[] genreIds;
+
+        Resolved(String display, long[] genreIds) {
+            this.display = display;
+            this.genreIds = genreIds;
+        }
+    }
+
+    private static final class Genre {
+        final long id;
+        final String name;
+
+        Genre(long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    GenreLinker(SQLiteDatabase db) {
+        this.db = db;
+        deleteLinks = db.compileStatement(
+                "DELETE FROM " + TABLE_MOVIE_GENRES + " WHERE movie_id=?");
+        insertLink = db.compileStatement(
+                "INSERT OR IGNORE INTO " + TABLE_MOVIE_GENRES +
+                        " (movie_id, genre_id, user_id) VALUES (?, ?, ?)");
+    }
+
+    /**
+     * Find (or create) the genre rows for a typed genre field, named as the user first spelled them
+     */
+    Resolved resolve(String genreText, long userId) {
+        List<Genre> found = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (String part : genreText.split(SEPARATORS)) {
+            String name = part.trim();
+            String key = normalize(name);
+            if (key.isEmpty()) continue;
+
+            Genre genre = find(key, name);
+            if (!found.contains(genre)) {
+                found.add(genre);
+                names.add(userName(userId, genre, name));
+            }
+        }
+
+        StringBuilder display = new StringBuilder();
+        long[] ids = new long[found.size()];
+        for (int i = 0; i < found.size(); i++) {
+            if (i > 0) display.append(", ");
+            display.append(names.get(i));
+            ids[i] = found.get(i).id;
+        }
+
+        // Nothing recognisable (e.g. only punctuation): keep the text as typed
+        return new Resolved(found.isEmpty() ? genreText.trim() : display.toString(), ids);
+    }
+
+    /**
+     * Replace a movie's genre links
+     */
+    void link(long movieId, long userId, long[] genreIds) {
+        deleteLinks.bindLong(1, movieId);
+        deleteLinks.executeUpdateDelete();
+
+        for (long genreId : genreIds) {
+            insertLink.bindLong(1, movieId);
+            insertLink.bindLong(2, genreId);
+            insertLink.bindLong(3, userId);
+            insertLink.executeInsert();
+        }
+    }
+
+    void close() {
+        deleteLinks.close();
+        insertLink.close();
+    }
+
+    /**
+     * Lookup key for a genre name: lower case, letters and digits only
+     */
+    static String normalize(String name) {
+        StringBuilder key = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c)) key.append(c);
+        }
+        return key.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private Genre find(String key, String name) {
+        Genre genre = genres.get(key);
+        if (genre != null) return genre;
+
+        Cursor cursor = db.rawQuery(
+                "SELECT genre_id, name FROM " + TABLE_GENRES + " WHERE normalized_name=?",
+                new String[]{key});
+        if (cursor.moveToFirst()) {
+            genre = new Genre(cursor.getLong(0), cursor.getString(1));
+        }
+        cursor.close();
+
+        if (genre == null) {
+            ContentValues values = new ContentValues();
+            values.put("name", name);
+            values.put("normalized_name", key);
+            genre = new Genre(db.insertOrThrow(TABLE_GENRES, null, values), name);
+        }
+
+        genres.put(key, genre);
+        return genre;
+    }
+
+    // The user's name for a genre, recording the given spelling if they have none yet
+    private String userName(long userId, Genre genre, String name) {
+        String cacheKey = userId + ":" + genre.id;
+        String userName = userNames.get(cacheKey);
+        if (userName != null) return userName;
+
+        Cursor cursor = db.rawQuery(
+                "SELECT name FROM " + TABLE_USER_GENRES + " WHERE user_id=? AND genre_id=?",
+                new String[]{String.valueOf(userId), String.valueOf(genre.id)});
+        if (cursor.moveToFirst()) {
+            userName = cursor.getString(0);
+        }
+        cursor.close();
+
+        if (userName == null) {
+            ContentValues values = new ContentValues();
+            values.put("user_id", userId);
+            values.put("genre_id", genre.id);
+            values.put("name", name);
+            db.insertOrThrow(TABLE_USER_GENRES, null, values);
+            userName = name;
+        }
+
+        userNames.put(cacheKey, userName);
+        return userName;
+    }
+}
@@ -30,30 +30,39 @@ public class LoginActivity extends AppCompatActivity {
     private Button btnLogin;
     private TextView tvRegisterLink;
 
-    // Database Helper and Session Manager
-    private DatabaseHelper databaseHelper;
+    // Repository and Session Manager, created on first use (nothing here needs them
+    // until the user presses Login, so the first frame doesn't wait for them)
+    private MovieRepository movieRepository;
     private SessionManager sessionManager;
 
+    // Cold start phases, logged after the first frame
+    private final StartupTrace startupTrace = new StartupTrace("LoginActivity");
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        setContentView(R.layout.activity_login);
 
-        // Initialize database helper and session manager
-        databaseHelper = new DatabaseHelper(this);
-        sessionManager = new SessionManager(this);
+        startupTrace.begin("inflate");
         setContentView(R.layout.activity_login);
-
-
+        startupTrace.end();
 
         // Initialize UI components
+        startupTrace.begin("views");
         initializeViews();
+        startupTrace.end();
 
         // Set click listeners
+        startupTrace.begin("listeners");
         setClickListeners();
+        startupTrace.end();
 
         // Check if username was passed from registration
+        startupTrace.begin("intent");
         checkRegistrationIntent();
+        startupTrace.end();
+
+        // Nothing to defer here; this just logs the phase timings
+        startupTrace.afterFirstDraw(btnLogin, () -> { });
     }
 
     /**
@@ -125,19 +134,24 @@ public class LoginActivity extends AppCompatActivity {
             return; // Stop if validation fails
         }
 
-        // Verify credentials with database
-        int userId = databaseHelper.getUserId(username, password);
-
-        if (userId != -1) {
+        // Verify credentials with database (off the main thread)
+        btnLogin.setEnabled(false);
+        if (movieRepository == null) movieRepository = new MovieRepository(this);
+        movieRepository.authenticate(username, password, this::onLoginResult);
+    }
 
-            // Save user_id in SharedPreferences
-            getSharedPreferences("UserSession", MODE_PRIVATE)
-                    .edit()
-                    .putInt("user_id", userId)
-                    .apply();
+    /**
+     * Handles the result of the background credential check
+     * @param user Matching user, or null if the credentials are invalid
+     */
+    private void onLoginResult(User user) {
+        btnLogin.setEnabled(true);
 
-            // Keep your existing session manager logic
+        if (user != null) {
 
+            // One session record (id, name, email) for the rest of the app
+            if (sessionManager == null) sessionManager = SessionManager.getInstance(this);
+            sessionManager.createLoginSession(user);
 
             Toast.makeText(this, "Login successful!", Toast.LENGTH_SHORT).show();
 
@@ -1,120 +1,209 @@
 package com.example.cinestack;
 
 import android.content.Intent;
-import android.content.SharedPreferences;
-import android.database.Cursor;
+import android.content.pm.ApplicationInfo;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.View;
+import android.widget.EditText;
+import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.view.ActionMode;
 import androidx.appcompat.widget.SearchView;
 import com.google.android.material.appbar.MaterialToolbar;
+import com.google.android.material.chip.Chip;
+import com.google.android.material.chip.ChipGroup;
+import com.google.android.material.snackbar.Snackbar;
 
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import android.widget.Button;
 
-import java.util.ArrayList;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Set;
+import java.util.TreeSet;
 
 public class MainActivity extends AppCompatActivity {
 
+    // Rows fetched per query; roughly two screens of items
+    private static final int PAGE_SIZE = 30;
+
+    // How long "Undo" is offered after a delete (tombstones live longer, see DatabaseHelper)
+    private static final int UNDO_WINDOW_MS = 6000;
+
+    // Changes arriving within this long of each other (e.g. import chunks) share one
+    // list reload and one chip rebuild
+    private static final int CHANGE_REFRESH_DELAY_MS = 150;
+
     private RecyclerView recyclerView;
     private MovieAdapter movieAdapter;
-    private ArrayList<Movie> movieList;
-    private DatabaseHelper databaseHelper;
+    private MovieRepository movieRepository;
+    private SessionManager sessionManager;
+    private SearchPipeline searchPipeline;
+    private ChipGroup genreChips;
+    // Contextual toolbar while rows are selected
+    private ActionMode selectionMode;
+    // Current sort and filters for the browse list (search results ignore them)
+    private MovieQuery movieQuery = MovieQuery.DEFAULT;
+    // True while the list shows search results instead of the browse list
+    private boolean searching;
+    // Committed writes (from any screen) are applied to the list as they happen
+    private MovieRepository.Cancellable changeSubscription;
+    // Reload / chip rebuild owed to changes, run once by refreshAfterChanges
+    private final Handler changeHandler = new Handler(Looper.getMainLooper());
+    private final Runnable refreshAfterChanges = this::refreshAfterChanges;
+    private boolean reloadPending;
+    private boolean chipsPending;
+    // Cold start phases, logged after the first frame
+    private final StartupTrace startupTrace = new StartupTrace("MainActivity");
+    // Query metrics menu item: debuggable builds, or once opted in (checked after the first frame)
+    private boolean showQueryMetrics;
+
+    // Import picker (CSV or JSON)
+    private final ActivityResultLauncher<String[]> importLauncher =
+            registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::importMovies);
+
+    // Export target picker (CSV) and the running export, if any
+    private final ActivityResultLauncher<String> exportLauncher =
+            registerForActivityResult(new ActivityResultContracts.CreateDocument("text/csv"), this::exportMovies);
+    private MovieRepository.Cancellable exportTask;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+
+        startupTrace.begin("inflate");
         setContentView(R.layout.activity_main);
+        startupTrace.end();
 
         // Toolbar
+        startupTrace.begin("toolbar");
         MaterialToolbar toolbar = findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
+        startupTrace.end();
 
-        // DB
-        databaseHelper = new DatabaseHelper(this);
+        // DB (all queries run off the main thread) and the in-memory session; neither
+        // touches the disk until it is first used
+        movieRepository = new MovieRepository(this);
+        sessionManager = SessionManager.getInstance(this);
+        showQueryMetrics = (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
 
         // RecyclerView
+        startupTrace.begin("list");
         recyclerView = findViewById(R.id.recyclerViewMovies);
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
 
-        movieList = new ArrayList<>();
-        movieAdapter = new MovieAdapter(movieList, this);
+        movieAdapter = new MovieAdapter(movieRepository, this::loadNextPage);
+        movieAdapter.setOnDeleteFailedListener(movies ->
+                Toast.makeText(this, movies.size() == 1
+                        ? "Could not delete " + movies.get(0).getTitle()
+                        : "Could not delete " + movies.size() + " movies", Toast.LENGTH_SHORT).show());
+        movieAdapter.setOnMoviesDeletedListener(this::showUndo);
+        movieAdapter.setOnSelectionChangedListener(this::onSelectionChanged);
         recyclerView.setAdapter(movieAdapter);
 
+        // Genre filter chips
+        genreChips = findViewById(R.id.genreChips);
+        startupTrace.end();
+
+        // Search (debounced, stale results dropped)
+        startupTrace.begin("search");
+        searchPipeline = createSearchPipeline();
+
         // Add Movie button
         Button btnAddMovie = findViewById(R.id.btnAddMovie);
         btnAddMovie.setOnClickListener(v ->
                 startActivity(new Intent(MainActivity.this, AddMovieActivity.class))
         );
+        startupTrace.end();
 
-        loadMovies();
+        // The first query opens the database and the session is read from its file,
+        // so both wait until the empty list is on screen
+        startupTrace.afterFirstDraw(recyclerView, this::onFirstDraw);
     }
 
-    private void loadMovies() {
-        movieList.clear();
+    private void onFirstDraw() {
+        if (isDestroyed()) return;
 
-        SharedPreferences prefs = getSharedPreferences("UserSession", MODE_PRIVATE);
-        int userId = prefs.getInt("user_id", -1);
+        if (!showQueryMetrics && DatabaseHelper.isQueryMetricsOptedIn(this)) {
+            showQueryMetrics = true;
+            invalidateOptionsMenu();
+        }
 
-        if (userId == -1) return;
+        // Everything below reads the user id, so it waits for the session off the main thread
+        movieRepository.loadSession(sessionManager, user -> {
+            if (isDestroyed()) return;
 
-        Cursor cursor = databaseHelper.getMoviesByUser(userId);
+            changeSubscription = movieRepository.observeChanges(this::onMoviesChanged);
+            loadMovies();
+            loadGenreChips();
+        });
+    }
 
-        if (cursor.moveToFirst()) {
-            do {
-                int id = cursor.getInt(cursor.getColumnIndexOrThrow("movie_id"));
-                String title = cursor.getString(cursor.getColumnIndexOrThrow("title"));
-                String genre = cursor.getString(cursor.getColumnIndexOrThrow("genre"));
-                int year = cursor.getInt(cursor.getColumnIndexOrThrow("year"));
-                String review = cursor.getString(cursor.getColumnIndexOrThrow("review"));
+    private void loadMovies() {
+        int userId = sessionManager.getUserId();
 
-                movieList.add(new Movie(id, title, genre, year, review));
-            } while (cursor.moveToNext());
-        }
+        if (userId == SessionManager.NO_USER) return;
 
-        cursor.close();
-        movieAdapter.notifyDataSetChanged();
+        movieRepository.getMoviesPage(userId, movieQuery, null, PAGE_SIZE, movies ->
+                movieAdapter.submitFirstPage(movies, movies.size() == PAGE_SIZE));
     }
 
-    private void searchMovies(String keyword) {
-        movieList.clear();
+    private void loadNextPage(Movie after) {
+        int userId = sessionManager.getUserId();
 
-        SharedPreferences prefs = getSharedPreferences("UserSession", MODE_PRIVATE);
-        int userId = prefs.getInt("user_id", -1);
+        if (userId == SessionManager.NO_USER) return;
 
-        if (userId == -1) return;
+        movieRepository.getMoviesPage(userId, movieQuery, after, PAGE_SIZE, movies ->
+                movieAdapter.appendPage(after, movies, movies.size() == PAGE_SIZE));
+    }
 
-        Cursor cursor = databaseHelper.searchMovies(userId, keyword);
+    private void searchMovies(String keyword) {
+        int userId = sessionManager.getUserId();
 
-        if (cursor.moveToFirst()) {
-            do {
-                int id = cursor.getInt(cursor.getColumnIndexOrThrow("movie_id"));
-                String title = cursor.getString(cursor.getColumnIndexOrThrow("title"));
-                String genre = cursor.getString(cursor.getColumnIndexOrThrow("genre"));
-                int year = cursor.getInt(cursor.getColumnIndexOrThrow("year"));
-                String review = cursor.getString(cursor.getColumnIndexOrThrow("review"));
+        if (userId == SessionManager.NO_USER) return;
 
-                movieList.add(new Movie(id, title, genre, year, review));
-            } while (cursor.moveToNext());
+        // Cleared search box goes back to the paged list straight away
+        if (keyword.trim().isEmpty()) {
+            searching = false;
+            searchPipeline.cancel();
+            loadMovies();
+            return;
         }
 
-        cursor.close();
-        movieAdapter.notifyDataSetChanged();
+        searching = true;
+        searchPipeline.onQueryChanged(keyword);
     }
 
-    @Override
-    protected void onResume() {
-        super.onResume();
-        loadMovies();
+    private SearchPipeline createSearchPipeline() {
+        Handler handler = new Handler(Looper.getMainLooper());
+
+        return new SearchPipeline(
+                (task, delayMillis) -> {
+                    handler.postDelayed(task, delayMillis);
+                    return () -> handler.removeCallbacks(task);
+                },
+                (query, callback) ->
+                        movieRepository.searchMovies(sessionManager.getUserId(), query, callback),
+                movies -> movieAdapter.submitFirstPage(movies, false),
+                SearchPipeline.DEFAULT_DEBOUNCE_MS);
     }
 
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.menu_main, menu);
+        menu.findItem(R.id.action_query_metrics).setVisible(showQueryMetrics);
 
         MenuItem item = menu.findItem(R.id.action_search);
         SearchView searchView = (SearchView) item.getActionView();
@@ -136,12 +225,295 @@ public class MainActivity extends AppCompatActivity {
         return true;
     }
 
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        MovieQuery.Sort sort = sortFor(item.getItemId());
+        if (sort != null) {
+            item.setChecked(true);
+            // Years read best newest first; text columns A to Z
+            movieQuery = movieQuery.sortedBy(sort, sort == MovieQuery.Sort.YEAR);
+            loadMovies();
+            return true;
+        }
+        if (item.getItemId() == R.id.action_filter) {
+            showFilterDialog();
+            return true;
+        }
+        if (item.getItemId() == R.id.action_stats) {
+            startActivity(new Intent(this, StatsActivity.class));
+            return true;
+        }
+        if (item.getItemId() == R.id.action_query_metrics) {
+            startActivity(new Intent(this, QueryMetricsActivity.class));
+            return true;
+        }
+        if (item.getItemId() == R.id.action_import) {
+            importLauncher.launch(new String[]{"text/*", "application/json"});
+            return true;
+        }
+        if (item.getItemId() == R.id.action_export) {
+            exportLauncher.launch("cinestack-movies.csv");
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    private static MovieQuery.Sort sortFor(int itemId) {
+        if (itemId == R.id.sort_added) return MovieQuery.Sort.ADDED;
+        if (itemId == R.id.sort_title) return MovieQuery.Sort.TITLE;
+        if (itemId == R.id.sort_year) return MovieQuery.Sort.YEAR;
+        if (itemId == R.id.sort_genre) return MovieQuery.Sort.GENRE;
+        return null;
+    }
+
+    // ================= LIVE UPDATES =================
+
+    /**
+     * Apply a committed write to the list on screen instead of re-running its query
+     */
+    private void onMoviesChanged(MovieChange change) {
+        if (change.getUserId() != sessionManager.getUserId()) return;
+
+        scheduleRefresh(false);
+
+        // Sorted or filtered lists: where a row goes (or whether it belongs) is the query's call
+        boolean browsingInIdOrder = !searching && MovieQuery.DEFAULT.equals(movieQuery);
+
+        switch (change.getType()) {
+            case INSERTED:
+                if (searching) break; // Shown when the search is cleared
+                // A reload is already on its way and will include these rows
+                if (reloadPending) break;
+                if (browsingInIdOrder && change.getMovies().size() <= PAGE_SIZE) {
+                    movieAdapter.appendInserted(change.getMovies());
+                } else {
+                    scheduleRefresh(true);
+                }
+                break;
+            case UPDATED:
+                if (reloadPending) break;
+                if (browsingInIdOrder || searching) movieAdapter.updateMovies(change.getMovies());
+                else scheduleRefresh(true);
+                break;
+            case DELETED:
+                movieAdapter.removeDeletedMovies(change.getMovieIds());
+                break;
+            case RESTORED:
+                // Only Undo restores, and the adapter puts those rows back itself
+                break;
+        }
+    }
+
+    // The first change of a burst posts the refresh; later ones just add to what it does
+    private void scheduleRefresh(boolean reload) {
+        if (reload) reloadPending = true;
+        if (!chipsPending) {
+            chipsPending = true;
+            changeHandler.postDelayed(refreshAfterChanges, CHANGE_REFRESH_DELAY_MS);
+        }
+    }
+
+    private void refreshAfterChanges() {
+        chipsPending = false;
+        loadGenreChips();
+        if (reloadPending) {
+            reloadPending = false;
+            // Clearing the search reloads anyway
+            if (!searching) loadMovies();
+        }
+    }
+
+    // ================= MULTI-SELECT DELETE =================
+
+    private void onSelectionChanged(int selectedCount) {
+        if (selectedCount == 0) {
+            if (selectionMode != null) selectionMode.finish();
+            return;
+        }
+        if (selectionMode == null) selectionMode = startSupportActionMode(selectionCallback);
+        selectionMode.setTitle(selectedCount + " selected");
+    }
+
+    private final ActionMode.Callback selectionCallback = new ActionMode.Callback() {
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            mode.getMenuInflater().inflate(R.menu.menu_movie_selection, menu);
+            return true;
+        }
+
+        @Override
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            return false;
+        }
+
+        @Override
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+            if (item.getItemId() == R.id.action_delete_selected) {
+                movieAdapter.deleteSelected();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void onDestroyActionMode(ActionMode mode) {
+            selectionMode = null;
+            movieAdapter.clearSelection();
+        }
+    };
+
+    private void showUndo(MovieAdapter.Deletion deletion) {
+        int count = deletion.getMovies().size();
+        String text = count == 1
+                ? deletion.getMovies().get(0).getTitle() + " deleted"
+                : count + " movies deleted";
+
+        Snackbar.make(recyclerView, text, UNDO_WINDOW_MS)
+                .setAction("Undo", v -> movieAdapter.undoDelete(deletion, restored -> {
+                    if (!restored) Toast.makeText(this, "Could not undo", Toast.LENGTH_SHORT).show();
+                }))
+                .show();
+    }
+
+    /**
+     * Year range filter (genres are filtered with the chip row)
+     */
+    private void showFilterDialog() {
+        View view = getLayoutInflater().inflate(R.layout.dialog_movie_filter, null);
+        EditText etMinYear = view.findViewById(R.id.etMinYear);
+        EditText etMaxYear = view.findViewById(R.id.etMaxYear);
+        if (movieQuery.getMinYear() != null) etMinYear.setText(String.valueOf(movieQuery.getMinYear()));
+        if (movieQuery.getMaxYear() != null) etMaxYear.setText(String.valueOf(movieQuery.getMaxYear()));
+
+        new AlertDialog.Builder(this)
+                .setTitle("Filter by year")
+                .setView(view)
+                .setPositiveButton("Apply", (dialog, which) ->
+                        applyFilter(movieQuery.withYearRange(parseYear(etMinYear), parseYear(etMaxYear))))
+                .setNeutralButton("Clear", (dialog, which) ->
+                        applyFilter(movieQuery.withYearRange(null, null)))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    /**
+     * One checkable chip per genre the user has, with its movie count
+     */
+    private void loadGenreChips() {
+        int userId = sessionManager.getUserId();
+
+        if (userId == SessionManager.NO_USER) return;
+
+        movieRepository.getGenreCounts(userId, counts -> {
+            if (isFinishing()) return;
+
+            genreChips.removeAllViews();
+            for (GenreCount genre : counts) {
+                Chip chip = new Chip(this);
+                chip.setText(genre.getName() + " (" + genre.getCount() + ")");
+                chip.setCheckable(true);
+                chip.setChecked(movieQuery.getGenres().contains(genre.getName()));
+                chip.setOnCheckedChangeListener((button, isChecked) ->
+                        toggleGenre(genre.getName(), isChecked));
+                genreChips.addView(chip);
+            }
+            findViewById(R.id.genreChipScroll).setVisibility(counts.isEmpty() ? View.GONE : View.VISIBLE);
+        });
+    }
+
+    private void toggleGenre(String genre, boolean selected) {
+        Set<String> genres = new TreeSet<>(movieQuery.getGenres());
+        if (selected) genres.add(genre);
+        else genres.remove(genre);
+        applyFilter(movieQuery.withGenres(genres));
+    }
+
+    private void applyFilter(MovieQuery query) {
+        movieQuery = query;
+        getSupportActionBar().setSubtitle(query.isFiltered() ? "Filtered" : null);
+        loadMovies();
+    }
+
+    private static Integer parseYear(EditText editText) {
+        String text = editText.getText().toString().trim();
+        if (text.isEmpty()) return null;
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void exportMovies(Uri uri) {
+        if (uri == null) return;
+
+        int userId = sessionManager.getUserId();
+
+        if (userId == SessionManager.NO_USER) return;
+
+        OutputStream out;
+        try {
+            out = getContentResolver().openOutputStream(uri);
+        } catch (FileNotFoundException e) {
+            out = null;
+        }
+        if (out == null) {
+            Toast.makeText(this, "Could not create file", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        exportTask = movieRepository.exportMovies(out, MovieImporter.Format.CSV, userId,
+                (written, total) -> getSupportActionBar().setSubtitle("Exporting " + written + "/" + total),
+                written -> {
+                    exportTask = null;
+                    getSupportActionBar().setSubtitle(movieQuery.isFiltered() ? "Filtered" : null);
+                    Toast.makeText(this, written == null
+                            ? "Export failed"
+                            : "Exported " + written + " movies", Toast.LENGTH_SHORT).show();
+                });
+    }
+
+    private void importMovies(Uri uri) {
+        if (uri == null) return;
+
+        int userId = sessionManager.getUserId();
+
+        if (userId == SessionManager.NO_USER) return;
+
+        String type = getContentResolver().getType(uri);
+        MovieImporter.Format format = (type != null && type.contains("json")) || uri.toString().endsWith(".json")
+                ? MovieImporter.Format.JSON
+                : MovieImporter.Format.CSV;
+
+        InputStream in;
+        try {
+            in = getContentResolver().openInputStream(uri);
+        } catch (FileNotFoundException e) {
+            Toast.makeText(this, "Could not open file", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        movieRepository.importMovies(in, format, userId, result -> {
+            if (result == null) {
+                Toast.makeText(this, "Import failed", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            Toast.makeText(this, "Imported " + result.imported + " movies"
+                    + (result.skipped > 0 ? " (" + result.skipped + " skipped)" : ""),
+                    Toast.LENGTH_LONG).show();
+        });
+    }
+
     // You wanted: login required every time app opens.
     // Clearing here is OK (but note: onDestroy is not always guaranteed).
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        SharedPreferences prefs = getSharedPreferences("UserSession", MODE_PRIVATE);
-        prefs.edit().clear().apply();
+        searchPipeline.cancel();
+        if (changeSubscription != null) changeSubscription.cancel();
+        changeHandler.removeCallbacks(refreshAfterChanges);
+        if (exportTask != null) exportTask.cancel();
+        // Not on rotation, or the recreated activity would find nobody logged in
+        if (isFinishing()) sessionManager.clearSession();
     }
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.example.cinestack;
 
+import java.util.Objects;
+
 public class Movie {
 
     private int id;
@@ -7,13 +9,30 @@ public class Movie {
     private String genre;
     private int year;
     private String review;
+    // List rows carry only the start of a long review; getMovie() loads all of it
+    private boolean reviewTruncated;
 
     public Movie(int id, String title, String genre, int year, String review) {
+        this(id, title, genre, year, review, false);
+    }
+
+    public Movie(int id, String title, String genre, int year, String review, boolean reviewTruncated) {
+        this.id = id;
+        this.title = title;
+        this.genre = genre;
+        this.year = year;
+        this.review = review;
+        this.reviewTruncated = reviewTruncated;
+    }
+
+    // For MovieRowMapper.readInto(), which reuses one instance while streaming a cursor
+    void set(int id, String title, String genre, int year, String review, boolean reviewTruncated) {
         this.id = id;
         this.title = title;
         this.genre = genre;
         this.year = year;
         this.review = review;
+        this.reviewTruncated = reviewTruncated;
     }
 
     public int getId() { return id; }
@@ -21,4 +40,24 @@ public class Movie {
     public String getGenre() { return genre; }
     public int getYear() { return year; }
     public String getReview() { return review; }
+    public boolean isReviewTruncated() { return reviewTruncated; }
+
+    // Value equality on every column, used by MovieAdapter's diff
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Movie)) return false;
+        Movie other = (Movie) o;
+        return id == other.id
+                && year == other.year
+                && reviewTruncated == other.reviewTruncated
+                && Objects.equals(title, other.title)
+                && Objects.equals(genre, other.genre)
+                && Objects.equals(review, other.review);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, title, genre, year, review, reviewTruncated);
+    }
 }
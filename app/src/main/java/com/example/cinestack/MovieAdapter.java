@@ -4,73 +4,481 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
-import android.content.Context;
-import android.widget.Button;
 import android.widget.Button;
 import android.content.Intent;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * MovieAdapter - Shows the movie list one page at a time
+ * Asks for the next page when the user scrolls close to the end of what is loaded.
+ * Every new list is diffed against the old one off the main thread (AsyncListDiffer),
+ * so only rows that actually changed are rebound.
+ *
+ * Binding creates no objects of its own per row: click listeners are set once per
+ * ViewHolder and forward to the adapter, and the formatted labels come from MovieLabels.
+ *
+ * Long-pressing a row starts multi-select; the selected rows are deleted together in
+ * one transaction and can be brought back with undoDelete() until they are purged.
+ * Tapping a row whose review was cut short (see DatabaseHelper.REVIEW_SNIPPET_LENGTH)
+ * loads the full review into it.
+ */
+public class MovieAdapter extends ListAdapter<Movie, MovieAdapter.MovieViewHolder> {
+
+    // Start fetching the next page this many rows before the end
+    private static final int PREFETCH_DISTANCE = 10;
 
-public class MovieAdapter extends RecyclerView.Adapter<MovieAdapter.MovieViewHolder> {
+    // Payload flags for partial rebinds
+    static final int PAYLOAD_TITLE = 1;
+    static final int PAYLOAD_GENRE = 1 << 1;
+    static final int PAYLOAD_YEAR = 1 << 2;
+    static final int PAYLOAD_REVIEW = 1 << 3;
+    static final int PAYLOAD_SELECTION = 1 << 4;
+
+    static final DiffUtil.ItemCallback<Movie> DIFF_CALLBACK = new DiffUtil.ItemCallback<Movie>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Movie oldItem, @NonNull Movie newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Movie oldItem, @NonNull Movie newItem) {
+            return oldItem.equals(newItem);
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull Movie oldItem, @NonNull Movie newItem) {
+            int changed = 0;
+            if (!Objects.equals(oldItem.getTitle(), newItem.getTitle())) changed |= PAYLOAD_TITLE;
+            if (!Objects.equals(oldItem.getGenre(), newItem.getGenre())) changed |= PAYLOAD_GENRE;
+            if (oldItem.getYear() != newItem.getYear()) changed |= PAYLOAD_YEAR;
+            if (!Objects.equals(oldItem.getReview(), newItem.getReview())
+                    || oldItem.isReviewTruncated() != newItem.isReviewTruncated()) changed |= PAYLOAD_REVIEW;
+            return changed;
+        }
+    };
 
-    private ArrayList<Movie> movieList;
-    private DatabaseHelper databaseHelper;
+    private static final int NO_MOVIE = -1;
 
-    public MovieAdapter(ArrayList<Movie> movieList, Context context) {
-        this.movieList = movieList;
-        this.databaseHelper = new DatabaseHelper(context);
+    private MovieRepository movieRepository;
+    private OnLoadMoreListener onLoadMoreListener;
+    private OnDeleteFailedListener onDeleteFailedListener;
+    private OnMoviesDeletedListener onMoviesDeletedListener;
+    private OnSelectionChangedListener onSelectionChangedListener;
+    private MovieLabels labels;
+    // Last list handed to submitList; getCurrentList() lags behind while a diff is running
+    private List<Movie> latestList = Collections.emptyList();
+    // Paging position (last row of the last page); unaffected by rows deleted from the screen
+    private Movie lastLoaded;
+    private boolean hasMore;
+    private boolean loading;
+    // Rows removed from the screen whose delete hasn't finished yet
+    private final Set<Integer> pendingDeletes = new HashSet<>();
+    // Multi-select; empty when not selecting
+    private final Set<Integer> selectedIds = new HashSet<>();
+
+    /**
+     * Called when the list needs the page after the given row (in the list's sort order)
+     */
+    public interface OnLoadMoreListener {
+        void onLoadMore(Movie after);
     }
 
-    @NonNull
-    @Override
-    public MovieViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+    /**
+     * Called when a delete failed and the rows were put back
+     */
+    public interface OnDeleteFailedListener {
+        void onDeleteFailed(List<Movie> movies);
+    }
 
-        View view = LayoutInflater.from(parent.getContext())
-                .inflate(R.layout.item_movie, parent, false);
+    /**
+     * Called once movies are deleted; pass the deletion to undoDelete() to bring them back
+     */
+    public interface OnMoviesDeletedListener {
+        void onMoviesDeleted(Deletion deletion);
+    }
 
-        return new MovieViewHolder(view);
+    /**
+     * Called when rows are selected or unselected (0 means selection mode ended)
+     */
+    public interface OnSelectionChangedListener {
+        void onSelectionChanged(int selectedCount);
     }
 
-    @Override
-    public void onBindViewHolder(@NonNull MovieViewHolder holder, int position) {
+    /**
+     * Movies removed by one delete, with where they were in the list
+     */
+    public static final class Deletion {
+        final List<Movie> movies;
+        // movie_id of the row each movie followed, or NO_MOVIE for the first row
+        final int[] previousIds;
 
-        Movie movie = movieList.get(position);
+        Deletion(List<Movie> movies, int[] previousIds) {
+            this.movies = movies;
+            this.previousIds = previousIds;
+        }
 
-        holder.tvTitle.setText(movie.getTitle());
-        holder.tvGenre.setText("Genre: " + movie.getGenre());
-        holder.tvYear.setText("Year: " + movie.getYear());
-        holder.tvReview.setText("Review: " + movie.getReview());
+        public List<Movie> getMovies() {
+            return movies;
+        }
+
+        List<Integer> ids() {
+            List<Integer> ids = new ArrayList<>(movies.size());
+            for (Movie movie : movies) ids.add(movie.getId());
+            return ids;
+        }
+    }
+
+    /**
+     * Row clicks, forwarded by the ViewHolder with its current position
+     */
+    interface ItemActionListener {
+        void onEditClicked(View view, int position);
+        void onDeleteClicked(int position);
+        void onRowClicked(int position);
+        void onRowLongClicked(int position);
+    }
+
+    private final ItemActionListener itemActionListener = new ItemActionListener() {
+        @Override
+        public void onEditClicked(View view, int position) {
+            editMovie(view, getItem(position));
+        }
+
+        @Override
+        public void onDeleteClicked(int position) {
+            deleteMovie(getItem(position));
+        }
+
+        @Override
+        public void onRowClicked(int position) {
+            if (!selectedIds.isEmpty()) toggleSelection(position);
+            else if (getItem(position).isReviewTruncated()) expandReview(getItem(position));
+        }
 
-        holder.btnDelete.setOnClickListener(v -> {
+        @Override
+        public void onRowLongClicked(int position) {
+            toggleSelection(position);
+        }
+    };
+
+    public MovieAdapter(MovieRepository movieRepository, OnLoadMoreListener onLoadMoreListener) {
+        super(DIFF_CALLBACK);
+        this.movieRepository = movieRepository;
+        this.onLoadMoreListener = onLoadMoreListener;
+        setHasStableIds(true);
+    }
+
+    public void setOnDeleteFailedListener(OnDeleteFailedListener onDeleteFailedListener) {
+        this.onDeleteFailedListener = onDeleteFailedListener;
+    }
+
+    public void setOnMoviesDeletedListener(OnMoviesDeletedListener onMoviesDeletedListener) {
+        this.onMoviesDeletedListener = onMoviesDeletedListener;
+    }
+
+    public void setOnSelectionChangedListener(OnSelectionChangedListener onSelectionChangedListener) {
+        this.onSelectionChangedListener = onSelectionChangedListener;
+    }
+
+    /**
+     * Replace the list with a first page (or a complete result such as a search)
+     * @param hasMore true if more pages can be requested after this one
+     */
+    public void submitFirstPage(List<Movie> movies, boolean hasMore) {
+        this.hasMore = hasMore;
+        this.loading = false;
+        this.lastLoaded = last(movies);
+        submit(withoutPendingDeletes(movies));
+    }
+
+    /**
+     * Append the page that follows the given row (as passed to OnLoadMoreListener)
+     * Pages that no longer follow the last loaded row (list was reloaded) are dropped
+     */
+    public void appendPage(Movie after, List<Movie> movies, boolean hasMore) {
+        if (!loading || after != lastLoaded) return;
+
+        List<Movie> combined = new ArrayList<>(latestList.size() + movies.size());
+        combined.addAll(latestList);
+        combined.addAll(withoutPendingDeletes(movies));
+        this.hasMore = hasMore;
+        this.loading = false;
+        if (!movies.isEmpty()) this.lastLoaded = last(movies);
+        submit(combined);
+    }
+
+    private void submit(List<Movie> movies) {
+        latestList = movies;
+        submitList(movies);
+    }
+
+    // ================= SELECTION =================
 
-            boolean deleted = databaseHelper.deleteMovie(movie.getId());
+    public int getSelectedCount() {
+        return selectedIds.size();
+    }
+
+    public void clearSelection() {
+        if (selectedIds.isEmpty()) return;
+        selectedIds.clear();
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
+        if (onSelectionChangedListener != null) onSelectionChangedListener.onSelectionChanged(0);
+    }
+
+    /**
+     * Delete every selected row (in list order) and leave selection mode
+     */
+    public void deleteSelected() {
+        List<Movie> selected = new ArrayList<>(selectedIds.size());
+        for (Movie movie : latestList) {
+            if (selectedIds.contains(movie.getId())) selected.add(movie);
+        }
+        clearSelection();
+        deleteMovies(selected);
+    }
+
+    private void toggleSelection(int position) {
+        int movieId = getItem(position).getId();
+        if (!selectedIds.remove(movieId)) selectedIds.add(movieId);
+        notifyItemChanged(position, PAYLOAD_SELECTION);
+        if (onSelectionChangedListener != null) {
+            onSelectionChangedListener.onSelectionChanged(selectedIds.size());
+        }
+    }
+
+    // ================= DELETE =================
+
+    void deleteMovie(Movie movie) {
+        deleteMovies(Collections.singletonList(movie));
+    }
+
+    /**
+     * Remove the rows straight away and delete them in one background transaction
+     * If the delete fails the rows are put back where they were.
+     */
+    void deleteMovies(List<Movie> movies) {
+        List<Movie> deleting = new ArrayList<>(movies.size());
+        for (Movie movie : movies) {
+            if (pendingDeletes.add(movie.getId())) deleting.add(movie);
+        }
+        if (deleting.isEmpty()) return;
+
+        // A row deleted with its own button may have been selected
+        boolean wasSelected = false;
+        for (Movie movie : deleting) wasSelected |= selectedIds.remove(movie.getId());
+        if (wasSelected && onSelectionChangedListener != null) {
+            onSelectionChangedListener.onSelectionChanged(selectedIds.size());
+        }
 
-            if (deleted) {
-                movieList.remove(holder.getAdapterPosition());
-                notifyItemRemoved(holder.getAdapterPosition());
+        int[] previousIds = new int[deleting.size()];
+        for (int i = 0; i < previousIds.length; i++) {
+            int index = indexOf(deleting.get(i).getId());
+            previousIds[i] = index > 0 ? latestList.get(index - 1).getId() : NO_MOVIE;
+        }
+        Deletion deletion = new Deletion(deleting, previousIds);
+        removeMovies(pendingDeletes);
+
+        movieRepository.deleteMovies(deletion.ids(), deleted -> {
+            pendingDeletes.removeAll(deletion.ids());
+            if (deleted < 0) {
+                restoreMovies(deletion);
+                if (onDeleteFailedListener != null) onDeleteFailedListener.onDeleteFailed(deleting);
+            } else if (onMoviesDeletedListener != null) {
+                onMoviesDeletedListener.onMoviesDeleted(deletion);
             }
         });
+    }
 
-        holder.btnEdit.setOnClickListener(v -> {
+    /**
+     * Restore a deletion and put its rows back where they were
+     * @param callback Gets false if the movies could not be restored (purged already,
+     *                 or the write failed)
+     */
+    public void undoDelete(Deletion deletion, MovieRepository.Callback<Boolean> callback) {
+        movieRepository.restoreMovies(deletion.ids(), restored -> {
+            if (restored > 0) restoreMovies(deletion);
+            if (callback != null) callback.onResult(restored > 0);
+        });
+    }
 
-            Intent intent = new Intent(v.getContext(), EditMovieActivity.class);
+    private void editMovie(View view, Movie movie) {
+        // Only the id: the editor loads the row itself (from MovieCache unless the
+        // cached review was cut short)
+        Intent intent = new Intent(view.getContext(), EditMovieActivity.class);
+        intent.putExtra(EditMovieActivity.EXTRA_MOVIE_ID, movie.getId());
 
-            intent.putExtra("id", movie.getId());
-            intent.putExtra("title", movie.getTitle());
-            intent.putExtra("genre", movie.getGenre());
-            intent.putExtra("year", movie.getYear());
-            intent.putExtra("review", movie.getReview());
+        view.getContext().startActivity(intent);
+    }
 
-            v.getContext().startActivity(intent);
+    // List rows only carry the start of a long review; tapping one loads the rest
+    private void expandReview(Movie movie) {
+        movieRepository.getMovie(movie.getId(), full -> {
+            if (full != null) updateMovies(Collections.singletonList(full));
         });
     }
 
+    private void removeMovies(Set<Integer> movieIds) {
+        List<Movie> remaining = new ArrayList<>(latestList.size());
+        for (Movie movie : latestList) {
+            if (!movieIds.contains(movie.getId())) remaining.add(movie);
+        }
+        if (remaining.size() != latestList.size()) submit(remaining);
+    }
+
+    // Put each row back after the row that preceded it (rows are restored in list order,
+    // so a run of deleted rows comes back as a run). If that row is gone the list was
+    // reloaded since, and the reload already reflects the database.
+    private void restoreMovies(Deletion deletion) {
+        List<Movie> restored = new ArrayList<>(latestList.size() + deletion.movies.size());
+        restored.addAll(latestList);
+
+        for (int i = 0; i < deletion.movies.size(); i++) {
+            Movie movie = deletion.movies.get(i);
+            int previousId = deletion.previousIds[i];
+            if (indexOf(restored, movie.getId()) != -1) continue;
+
+            int index = previousId == NO_MOVIE ? 0 : indexOf(restored, previousId) + 1;
+            if (index == 0 && previousId != NO_MOVIE) continue;
+
+            restored.add(index, movie);
+        }
+        submit(restored);
+    }
+
+    // ================= CHANGES FROM ELSEWHERE =================
+
+    /**
+     * Show rows as edited (e.g. in EditMovieActivity); rows not in the list are ignored
+     */
+    public void updateMovies(List<Movie> movies) {
+        List<Movie> updated = null;
+        for (Movie movie : movies) {
+            int index = indexOf(movie.getId());
+            if (index == -1) continue;
+            if (updated == null) updated = new ArrayList<>(latestList);
+            updated.set(index, movie);
+        }
+        if (updated != null) submit(updated);
+    }
+
+    /**
+     * Add new rows to the end of the list (the movie_id order)
+     * While more pages remain, paging will reach them anyway.
+     */
+    public void appendInserted(List<Movie> movies) {
+        if (hasMore) return;
+
+        List<Movie> combined = new ArrayList<>(latestList.size() + movies.size());
+        combined.addAll(latestList);
+        for (Movie movie : movies) {
+            if (indexOf(movie.getId()) == -1) combined.add(movie);
+        }
+        if (combined.size() != latestList.size()) submit(combined);
+    }
+
+    /**
+     * Drop deleted rows; rows this adapter deleted itself are already gone
+     */
+    public void removeDeletedMovies(Collection<Integer> movieIds) {
+        removeMovies(new HashSet<>(movieIds));
+    }
+
+    // A page fetched while a delete is running may still contain the row
+    private List<Movie> withoutPendingDeletes(List<Movie> movies) {
+        if (pendingDeletes.isEmpty()) return new ArrayList<>(movies);
+
+        List<Movie> kept = new ArrayList<>(movies.size());
+        for (Movie movie : movies) {
+            if (!pendingDeletes.contains(movie.getId())) kept.add(movie);
+        }
+        return kept;
+    }
+
+    private int indexOf(int movieId) {
+        return indexOf(latestList, movieId);
+    }
+
+    private static int indexOf(List<Movie> movies, int movieId) {
+        for (int i = 0; i < movies.size(); i++) {
+            if (movies.get(i).getId() == movieId) return i;
+        }
+        return -1;
+    }
+
+    private static Movie last(List<Movie> movies) {
+        return movies.isEmpty() ? null : movies.get(movies.size() - 1);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getId();
+    }
+
+    @NonNull
+    @Override
+    public MovieViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+
+        if (labels == null) labels = new MovieLabels(parent.getResources());
+
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.item_movie, parent, false);
+
+        return new MovieViewHolder(view, itemActionListener);
+    }
+
     @Override
-    public int getItemCount() {
-        return movieList.size();
+    public void onBindViewHolder(@NonNull MovieViewHolder holder, int position,
+                                 @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+
+        // Only touch the fields that changed
+        Movie movie = getItem(position);
+        int changed = 0;
+        for (int i = 0; i < payloads.size(); i++) {
+            changed |= (Integer) payloads.get(i);
+        }
+
+        if ((changed & PAYLOAD_TITLE) != 0) holder.tvTitle.setText(movie.getTitle());
+        if ((changed & PAYLOAD_GENRE) != 0) holder.tvGenre.setText(labels.genre(movie.getGenre()));
+        if ((changed & PAYLOAD_YEAR) != 0) holder.tvYear.setText(labels.year(movie.getYear()));
+        if ((changed & PAYLOAD_REVIEW) != 0) holder.tvReview.setText(review(movie));
+        if ((changed & PAYLOAD_SELECTION) != 0) holder.itemView.setActivated(selectedIds.contains(movie.getId()));
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull MovieViewHolder holder, int position) {
+
+        Movie movie = getItem(position);
+
+        if (hasMore && !loading && position >= getItemCount() - PREFETCH_DISTANCE) {
+            loading = true;
+            onLoadMoreListener.onLoadMore(lastLoaded);
+        }
+
+        holder.tvTitle.setText(movie.getTitle());
+        holder.tvGenre.setText(labels.genre(movie.getGenre()));
+        holder.tvYear.setText(labels.year(movie.getYear()));
+        holder.tvReview.setText(review(movie));
+        holder.itemView.setActivated(selectedIds.contains(movie.getId()));
+    }
+
+    private String review(Movie movie) {
+        return labels.review(movie.getReview(), movie.isReviewTruncated());
     }
 
     public static class MovieViewHolder extends RecyclerView.ViewHolder {
@@ -79,7 +487,7 @@ public class MovieAdapter extends RecyclerView.Adapter<MovieAdapter.MovieViewHol
         Button btnDelete, btnEdit;
 
 
-        public MovieViewHolder(@NonNull View itemView) {
+        MovieViewHolder(@NonNull View itemView, ItemActionListener listener) {
             super(itemView);
 
             tvTitle = itemView.findViewById(R.id.tvTitle);
@@ -88,6 +496,26 @@ public class MovieAdapter extends RecyclerView.Adapter<MovieAdapter.MovieViewHol
             tvReview = itemView.findViewById(R.id.tvReview);
             btnDelete = itemView.findViewById(R.id.btnDelete);
             btnEdit = itemView.findViewById(R.id.btnEdit);
+
+            // Bound once; the row is looked up at click time, so rebinding never replaces them
+            btnDelete.setOnClickListener(v -> {
+                int position = getBindingAdapterPosition();
+                if (position != RecyclerView.NO_POSITION) listener.onDeleteClicked(position);
+            });
+            btnEdit.setOnClickListener(v -> {
+                int position = getBindingAdapterPosition();
+                if (position != RecyclerView.NO_POSITION) listener.onEditClicked(v, position);
+            });
+            itemView.setOnClickListener(v -> {
+                int position = getBindingAdapterPosition();
+                if (position != RecyclerView.NO_POSITION) listener.onRowClicked(position);
+            });
+            itemView.setOnLongClickListener(v -> {
+                int position = getBindingAdapterPosition();
+                if (position == RecyclerView.NO_POSITION) return false;
+                listener.onRowLongClicked(position);
+                return true;
+            });
         }
     }
 }
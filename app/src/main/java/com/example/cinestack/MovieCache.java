@@ -0,0 +1,318 @@
+package com.example.cinestack;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * MovieCache - LRU cache of movie query results, keyed by user and query
+ * Writes patch the cached lists in place (or drop the entries they can't patch),
+ * so coming back to the list after an add/edit/delete doesn't re-run the query.
+ *
+ * Patches arrive from DatabaseHelper's MovieChangeBus on the writing thread, before
+ * the write returns.
+ *
+ * Coherence: a reader takes version() before querying and passes it to put();
+ * if any write was applied in between, the (possibly stale) result is not cached.
+ * Patches are idempotent, so a write that reaches the cache after a reader already
+ * cached its effect is harmless.
+ */
+public class MovieCache implements MovieChangeBus.Listener {
+
+    /**
+     * What a cached list holds, which decides how writes are applied to it
+     */
+    public enum Kind {
+        // A movie_id-ordered page of the user's library
+        PAGE,
+        // A keyword search result; any insert/update may change its membership
+        SEARCH,
+        // A page of a sorted and/or filtered list (MovieQuery), keyed after its last row;
+        // an insert may sort onto any page, and an update may move a row between pages
+        // or in/out of the filter, so both drop these. A delete only affects the page
+        // holding the row, as for PAGE.
+        QUERY
+    }
+
+    public static final int NO_LIMIT = Integer.MAX_VALUE;
+
+    // Larger changes drop the user's entries instead of patching every entry once per movie
+    static final int MAX_PATCHES = 32;
+
+    // Rough per-row overhead (object headers, fields, list slot) on top of the strings
+    private static final int MOVIE_OVERHEAD_BYTES = 64;
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long totalBytes;
+    private long version;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    public MovieCache(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return A copy of the cached list, or null on a miss
+     */
+    public synchronized List<Movie> get(int userId, Kind kind, String query) {
+        Entry entry = entries.get(new Key(userId, kind, query));
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return new ArrayList<>(entry.movies);
+    }
+
+    /**
+     * A single row from any cached list, or null if no cached list has it
+     * Lets a screen open a movie the list already showed without querying.
+     */
+    public synchronized Movie findMovie(int movieId) {
+        for (Entry entry : entries.values()) {
+            int index = entry.indexOf(movieId);
+            if (index != -1) return entry.movies.get(index);
+        }
+        return null;
+    }
+
+    /**
+     * Current write version; read it before running the query whose result you will put()
+     */
+    public synchronized long version() {
+        return version;
+    }
+
+    /**
+     * Cache a query result
+     * @param limit Row limit the query ran with (NO_LIMIT for none); a list shorter
+     *              than its limit holds every matching row and can be patched in place
+     * @param readVersion version() taken before the query ran
+     */
+    public synchronized void put(int userId, Kind kind, String query, List<Movie> movies,
+                                 int limit, long readVersion) {
+        if (readVersion != version) return;
+
+        Key key = new Key(userId, kind, query);
+        Entry entry = new Entry(kind, new ArrayList<>(movies), limit);
+        Entry previous = entries.put(key, entry);
+        if (previous != null) totalBytes -= previous.bytes;
+        totalBytes += entry.bytes;
+        trim();
+    }
+
+    /**
+     * Apply a committed write
+     */
+    @Override
+    public synchronized void onMoviesChanged(MovieChange change) {
+        int userId = change.getUserId();
+        if (change.getMovieIds().size() > MAX_PATCHES) {
+            invalidateUser(userId);
+            return;
+        }
+
+        switch (change.getType()) {
+            case INSERTED:
+                for (Movie movie : change.getMovies()) onMovieInserted(userId, movie);
+                break;
+            case UPDATED:
+                for (Movie movie : change.getMovies()) onMovieUpdated(movie);
+                break;
+            case DELETED:
+                for (int movieId : change.getMovieIds()) onMovieDeleted(movieId);
+                break;
+            case RESTORED:
+                // Restored rows belong in the middle of cached pages, which can't be patched
+                invalidateUser(userId);
+                break;
+        }
+    }
+
+    /**
+     * A movie was added; it has the highest movie_id, so it belongs at the end of the last page
+     */
+    public synchronized void onMovieInserted(int userId, Movie movie) {
+        version++;
+        for (Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Key, Entry> mapEntry = it.next();
+            if (mapEntry.getKey().userId != userId) continue;
+
+            Entry entry = mapEntry.getValue();
+            int index = entry.indexOf(movie.getId());
+
+            if (entry.kind == Kind.SEARCH) {
+                // The new movie may match the keyword
+                remove(it, entry);
+            } else if (entry.kind == Kind.QUERY) {
+                // It may sort onto this page or an earlier one, shifting this one
+                remove(it, entry);
+            } else if (index != -1) {
+                // A reader already cached the list with this row in it
+                entry.movies.set(index, movie);
+                resize(entry);
+            } else if (entry.isComplete()) {
+                entry.movies.add(movie);
+                resize(entry);
+            }
+        }
+        trim();
+    }
+
+    /**
+     * A movie's fields changed; pages are patched, searches and sorted/filtered pages
+     * dropped (membership or order may change)
+     */
+    public synchronized void onMovieUpdated(Movie movie) {
+        version++;
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            int index = entry.indexOf(movie.getId());
+
+            if (entry.kind == Kind.SEARCH) {
+                remove(it, entry);
+            } else if (entry.kind == Kind.QUERY) {
+                // The sort key or filtered field may have changed
+                remove(it, entry);
+            } else if (index != -1) {
+                entry.movies.set(index, movie);
+                resize(entry);
+            }
+        }
+        trim();
+    }
+
+    /**
+     * A movie was deleted; complete lists drop the row, partial pages are refetched
+     */
+    public synchronized void onMovieDeleted(int movieId) {
+        version++;
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            int index = entry.indexOf(movieId);
+            if (index == -1) continue;
+
+            if (entry.isComplete()) {
+                entry.movies.remove(index);
+                resize(entry);
+            } else {
+                // The next row would slide into this page, and we don't have it
+                remove(it, entry);
+            }
+        }
+    }
+
+    /**
+     * Drop everything cached for one user (bulk changes such as an import)
+     */
+    public synchronized void invalidateUser(int userId) {
+        version++;
+        for (Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Key, Entry> mapEntry = it.next();
+            if (mapEntry.getKey().userId == userId) remove(it, mapEntry.getValue());
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        version++;
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    public synchronized long hitCount() { return hitCount; }
+    public synchronized long missCount() { return missCount; }
+    public synchronized long evictionCount() { return evictionCount; }
+    public synchronized int size() { return entries.size(); }
+    public synchronized long sizeBytes() { return totalBytes; }
+
+    private void trim() {
+        Iterator<Entry> it = entries.values().iterator();
+        while ((entries.size() > maxEntries || totalBytes > maxBytes) && it.hasNext()) {
+            remove(it, it.next());
+            evictionCount++;
+        }
+    }
+
+    private void remove(Iterator<?> it, Entry entry) {
+        it.remove();
+        totalBytes -= entry.bytes;
+    }
+
+    private void resize(Entry entry) {
+        totalBytes -= entry.bytes;
+        entry.bytes = estimateBytes(entry.movies);
+        totalBytes += entry.bytes;
+    }
+
+    static long estimateBytes(List<Movie> movies) {
+        long bytes = 0;
+        for (Movie movie : movies) {
+            bytes += MOVIE_OVERHEAD_BYTES
+                    + 2L * (length(movie.getTitle()) + length(movie.getGenre()) + length(movie.getReview()));
+        }
+        return bytes;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private static final class Key {
+        final int userId;
+        final Kind kind;
+        final String query;
+
+        Key(int userId, Kind kind, String query) {
+            this.userId = userId;
+            this.kind = kind;
+            this.query = query;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return userId == other.userId && kind == other.kind && query.equals(other.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, kind, query);
+        }
+    }
+
+    private static final class Entry {
+        final Kind kind;
+        final List<Movie> movies;
+        final int limit;
+        long bytes;
+
+        Entry(Kind kind, List<Movie> movies, int limit) {
+            this.kind = kind;
+            this.movies = movies;
+            this.limit = limit;
+            this.bytes = estimateBytes(movies);
+        }
+
+        // Fewer rows than the limit means nothing lies beyond this list
+        boolean isComplete() {
+            return movies.size() < limit;
+        }
+
+        int indexOf(int movieId) {
+            for (int i = 0; i < movies.size(); i++) {
+                if (movies.get(i).getId() == movieId) return i;
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.cinestack;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * MovieChange - One committed write to a user's movies
+ * Published by DatabaseHelper through its MovieChangeBus once the transaction has committed.
+ */
+public class MovieChange {
+
+    public enum Type {
+        // New rows; getMovies() has them as list rows (long reviews cut, see DatabaseHelper.listRow)
+        INSERTED,
+        // Edited rows; getMovies() has them as list rows
+        UPDATED,
+        // Rows gone from every list (deleted, with or without undo)
+        DELETED,
+        // Deleted rows brought back by an undo
+        RESTORED
+    }
+
+    private final Type type;
+    private final int userId;
+    private final List<Integer> movieIds;
+    private final List<Movie> movies;
+
+    private MovieChange(Type type, int userId, List<Integer> movieIds, List<Movie> movies) {
+        this.type = type;
+        this.userId = userId;
+        this.movieIds = Collections.unmodifiableList(movieIds);
+        this.movies = Collections.unmodifiableList(movies);
+    }
+
+    // INSERTED / UPDATED: the rows as a list query returns them
+    static MovieChange ofMovies(Type type, int userId, List<Movie> movies) {
+        List<Integer> movieIds = new ArrayList<>(movies.size());
+        for (Movie movie : movies) movieIds.add(movie.getId());
+        return new MovieChange(type, userId, movieIds, movies);
+    }
+
+    // DELETED / RESTORED: just the ids
+    static MovieChange ofIds(Type type, int userId, List<Integer> movieIds) {
+        return new MovieChange(type, userId, movieIds, Collections.<Movie>emptyList());
+    }
+
+    public Type getType() { return type; }
+    public int getUserId() { return userId; }
+    public List<Integer> getMovieIds() { return movieIds; }
+
+    // Empty for DELETED and RESTORED
+    public List<Movie> getMovies() { return movies; }
+}
@@ -0,0 +1,60 @@
+package com.example.cinestack;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * MovieChangeBus - Tells listeners which movies each write changed
+ * DatabaseHelper publishes after every committed write, so the cache and the list
+ * screen can apply the change itself instead of re-running their queries.
+ */
+public class MovieChangeBus {
+
+    /**
+     * Receives every committed change, on the executor it was registered with
+     */
+    public interface Listener {
+        void onMoviesChanged(MovieChange change);
+    }
+
+    private static final class Subscription {
+        final Listener listener;
+        final Executor executor;
+
+        Subscription(Listener listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+    }
+
+    // Registration is rare, publishing happens on every write
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param executor Where the listener is called; Runnable::run calls it on the
+     *                 writing thread, before the write method returns.
+     *                 Registering a listener again does nothing.
+     */
+    public synchronized void register(Listener listener, Executor executor) {
+        if (indexOf(listener) == -1) subscriptions.add(new Subscription(listener, executor));
+    }
+
+    public synchronized void unregister(Listener listener) {
+        int index = indexOf(listener);
+        if (index != -1) subscriptions.remove(index);
+    }
+
+    void publish(MovieChange change) {
+        for (Subscription subscription : subscriptions) {
+            subscription.executor.execute(() -> subscription.listener.onMoviesChanged(change));
+        }
+    }
+
+    private int indexOf(Listener listener) {
+        for (int i = 0; i < subscriptions.size(); i++) {
+            if (subscriptions.get(i).listener == listener) return i;
+        }
+        return -1;
+    }
+}
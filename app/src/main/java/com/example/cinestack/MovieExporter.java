@@ -0,0 +1,140 @@
+package com.example.cinestack;
+
+import android.database.Cursor;
+import android.os.CancellationSignal;
+import android.util.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * MovieExporter - Streams a user's library to CSV or JSON
+ * Rows go straight from the Cursor to a buffered writer, without building a list,
+ * in the same format MovieImporter reads back.
+ */
+public class MovieExporter {
+
+    // Report progress every this many rows
+    private static final int PROGRESS_INTERVAL = 500;
+
+    private final DatabaseHelper databaseHelper;
+
+    /**
+     * Progress listener, called on the exporting thread
+     */
+    public interface ProgressListener {
+        void onProgress(int written, int total);
+    }
+
+    public MovieExporter(DatabaseHelper databaseHelper) {
+        this.databaseHelper = databaseHelper;
+    }
+
+    /**
+     * Write every movie of the user to the stream, then close it
+     *
+     * @param cancellationSignal Checked between rows, may be null
+     * @param listener Progress listener, may be null
+     * @return Number of movies written
+     * @throws android.os.OperationCanceledException if cancelled part way
+     */
+    public int export(OutputStream out, MovieImporter.Format format, int userId,
+                      CancellationSignal cancellationSignal, ProgressListener listener)
+            throws IOException {
+
+        QueryMetrics metrics = databaseHelper.getMetrics();
+        long start = metrics.start();
+        // From the summary table: cursor.getCount() would run the whole query once
+        // just to count, before the rows below are streamed
+        int total = databaseHelper.getMovieCount(userId);
+        Cursor cursor = databaseHelper.getMoviesForExport(userId);
+
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            MovieRowMapper mapper = new MovieRowMapper(cursor);
+            // One instance for the whole export; each row is written before the next is read
+            Movie movie = new Movie(0, null, null, 0, null);
+            int written = 0;
+
+            JsonWriter json = null;
+            if (format == MovieImporter.Format.JSON) {
+                json = new JsonWriter(writer);
+                json.beginArray();
+            } else {
+                writer.write(MovieImporter.CSV_HEADER);
+                writer.write('\n');
+            }
+
+            while (cursor.moveToNext()) {
+                if (cancellationSignal != null) cancellationSignal.throwIfCanceled();
+
+                mapper.readInto(movie);
+                String title = movie.getTitle();
+                String genre = movie.getGenre();
+                int year = movie.getYear();
+                String review = movie.getReview();
+
+                if (json != null) {
+                    json.beginObject();
+                    json.name("title").value(title);
+                    json.name("genre").value(genre);
+                    json.name("year").value(year);
+                    json.name("review").value(review == null ? "" : review);
+                    json.endObject();
+                } else {
+                    writeCsvField(writer, title);
+                    writer.write(',');
+                    writeCsvField(writer, genre);
+                    writer.write(',');
+                    writer.write(Integer.toString(year));
+                    writer.write(',');
+                    writeCsvField(writer, review == null ? "" : review);
+                    writer.write('\n');
+                }
+
+                written++;
+                if (listener != null && written % PROGRESS_INTERVAL == 0) {
+                    // A movie added since the count was read can take written past it
+                    listener.onProgress(written, Math.max(total, written));
+                }
+            }
+
+            if (json != null) {
+                json.endArray();
+                json.flush();
+            }
+            if (listener != null && written % PROGRESS_INTERVAL != 0) {
+                listener.onProgress(written, Math.max(total, written));
+            }
+            metrics.end(QueryMetrics.Operation.EXPORT_MOVIES, start, written);
+            return written;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Quote only when needed, doubling embedded quotes (RFC 4180)
+    static void writeCsvField(Writer writer, String value) throws IOException {
+        boolean needsQuotes = false;
+        for (int i = 0; i < value.length() && !needsQuotes; i++) {
+            char c = value.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+
+        if (!needsQuotes) {
+            writer.write(value);
+            return;
+        }
+
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') writer.write('"');
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+}
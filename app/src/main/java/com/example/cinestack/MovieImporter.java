@@ -0,0 +1,224 @@
+package com.example.cinestack;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * MovieImporter - Streams movies from a CSV or JSON file into the database
+ * Rows are parsed one at a time and written in fixed-size chunks, so memory
+ * use stays flat no matter how large the file is.
+ *
+ * CSV: header line "title,genre,year,review" (any order and case), RFC 4180 quoting;
+ * a UTF-8 byte order mark and blank lines are ignored.
+ * JSON: an array of {"title", "genre", "year", "review"} objects.
+ */
+public class MovieImporter {
+
+    public enum Format { CSV, JSON }
+
+    static final String CSV_HEADER = "title,genre,year,review";
+
+    // Rows per insertMovies() transaction
+    static final int CHUNK_SIZE = 500;
+
+    private final DatabaseHelper databaseHelper;
+
+    /**
+     * Counts reported after an import
+     */
+    public static class Result {
+        public final int imported;
+        public final int skipped;
+
+        Result(int imported, int skipped) {
+            this.imported = imported;
+            this.skipped = skipped;
+        }
+    }
+
+    public MovieImporter(DatabaseHelper databaseHelper) {
+        this.databaseHelper = databaseHelper;
+    }
+
+    /**
+     * Import every valid row from the stream; rows without a title, genre or year are skipped
+     * The stream is closed when the import finishes.
+     */
+    public Result importMovies(InputStream in, Format format, int userId) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            skipByteOrderMark(reader);
+            return format == Format.JSON
+                    ? importJson(reader, userId)
+                    : importCsv(reader, userId);
+        }
+    }
+
+    private Result importCsv(BufferedReader reader, int userId) throws IOException {
+        ChunkWriter writer = new ChunkWriter(userId);
+
+        List<String> header = readCsvRecord(reader);
+        if (header == null) return writer.finish();
+
+        // Spreadsheets write "Title", " Year " and so on
+        for (int i = 0; i < header.size(); i++) {
+            header.set(i, header.get(i).trim().toLowerCase(Locale.ROOT));
+        }
+        int titleIndex = header.indexOf("title");
+        int genreIndex = header.indexOf("genre");
+        int yearIndex = header.indexOf("year");
+        int reviewIndex = header.indexOf("review");
+
+        List<String> record;
+        while ((record = readCsvRecord(reader)) != null) {
+            // Blank lines (e.g. at the end of the file) are not rows, so not skipped rows either
+            if (record.size() == 1 && record.get(0).trim().isEmpty()) continue;
+            writer.add(field(record, titleIndex), field(record, genreIndex),
+                    field(record, yearIndex), field(record, reviewIndex));
+        }
+
+        return writer.finish();
+    }
+
+    private Result importJson(BufferedReader reader, int userId) throws IOException {
+        ChunkWriter writer = new ChunkWriter(userId);
+        JsonReader json = new JsonReader(reader);
+
+        json.beginArray();
+        while (json.hasNext()) {
+            String title = null, genre = null, year = null, review = null;
+
+            json.beginObject();
+            while (json.hasNext()) {
+                String name = json.nextName();
+                if (json.peek() == JsonToken.NULL) {
+                    json.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "title": title = json.nextString(); break;
+                    case "genre": genre = json.nextString(); break;
+                    case "year": year = json.nextString(); break;
+                    case "review": review = json.nextString(); break;
+                    default: json.skipValue();
+                }
+            }
+            json.endObject();
+
+            writer.add(title, genre, year, review);
+        }
+        json.endArray();
+
+        return writer.finish();
+    }
+
+    // Excel and Notepad start UTF-8 files with a BOM, which would end up in the first header name
+    private static void skipByteOrderMark(BufferedReader reader) throws IOException {
+        reader.mark(1);
+        if (reader.read() != '\uFEFF') reader.reset();
+    }
+
+    private static String field(List<String> record, int index) {
+        return index >= 0 && index < record.size() ? record.get(index) : null;
+    }
+
+    /**
+     * Read one CSV record (quoted fields may span lines)
+     * @return The fields, or null at end of input
+     */
+    static List<String> readCsvRecord(Reader reader) throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean any = false;
+        int c;
+
+        while ((c = reader.read()) != -1) {
+            any = true;
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        field.append('"');
+                    } else {
+                        reader.reset();
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+        }
+
+        if (!any) return null;
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Buffers valid rows and flushes them to the database CHUNK_SIZE at a time
+     */
+    private class ChunkWriter {
+
+        private final int userId;
+        private final List<Movie> chunk = new ArrayList<>(CHUNK_SIZE);
+        private int imported;
+        private int skipped;
+
+        ChunkWriter(int userId) {
+            this.userId = userId;
+        }
+
+        void add(String title, String genre, String year, String review) {
+            if (title == null || title.trim().isEmpty()
+                    || genre == null || genre.trim().isEmpty()
+                    || year == null) {
+                skipped++;
+                return;
+            }
+
+            int parsedYear;
+            try {
+                parsedYear = Integer.parseInt(year.trim());
+            } catch (NumberFormatException e) {
+                skipped++;
+                return;
+            }
+
+            chunk.add(new Movie(0, title, genre, parsedYear, review == null ? "" : review));
+            if (chunk.size() == CHUNK_SIZE) flush();
+        }
+
+        Result finish() {
+            flush();
+            return new Result(imported, skipped);
+        }
+
+        private void flush() {
+            if (chunk.isEmpty()) return;
+            int inserted = databaseHelper.insertMovies(chunk, userId);
+            imported += inserted;
+            skipped += chunk.size() - inserted;
+            chunk.clear();
+        }
+    }
+}
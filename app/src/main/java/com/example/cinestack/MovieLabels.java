@@ -0,0 +1,68 @@
+package com.example.cinestack;
+
+import android.content.res.Resources;
+import android.util.LruCache;
+import android.util.SparseArray;
+
+/**
+ * MovieLabels - Formatted "Genre: / Year: / Review:" strings for the movie list
+ * Each distinct value is formatted once and reused, so rebinding a row while
+ * scrolling doesn't build new strings. Main thread only.
+ */
+final class MovieLabels {
+
+    // Genres repeat a lot; reviews are mostly unique, so only recently shown ones are kept
+    private static final int GENRE_CACHE_SIZE = 64;
+    private static final int REVIEW_CACHE_SIZE = 256;
+
+    private final String genreFormat;
+    private final String yearFormat;
+    private final String reviewFormat;
+
+    private final LruCache<String, String> genres = new LruCache<>(GENRE_CACHE_SIZE);
+    private final SparseArray<String> years = new SparseArray<>();
+    private final LruCache<String, String> reviews = new LruCache<>(REVIEW_CACHE_SIZE);
+    // Reviews cut short by the list queries, shown with an ellipsis
+    private final LruCache<String, String> reviewSnippets = new LruCache<>(REVIEW_CACHE_SIZE);
+
+    MovieLabels(Resources resources) {
+        genreFormat = resources.getString(R.string.movie_genre_label);
+        yearFormat = resources.getString(R.string.movie_year_label);
+        reviewFormat = resources.getString(R.string.movie_review_label);
+    }
+
+    String genre(String genre) {
+        return format(genres, genreFormat, genre);
+    }
+
+    String year(int year) {
+        String label = years.get(year);
+        if (label == null) {
+            label = String.format(yearFormat, year);
+            years.put(year, label);
+        }
+        return label;
+    }
+
+    String review(String review, boolean truncated) {
+        return truncated
+                ? format(reviewSnippets, reviewFormat, review, "\u2026")
+                : format(reviews, reviewFormat, review, "");
+    }
+
+    private static String format(LruCache<String, String> cache, String format, String value) {
+        return format(cache, format, value, "");
+    }
+
+    private static String format(LruCache<String, String> cache, String format, String value,
+                                 String suffix) {
+        // LruCache doesn't take null keys; a missing value is shown as empty
+        String key = value == null ? "" : value;
+        String label = cache.get(key);
+        if (label == null) {
+            label = String.format(format, key + suffix);
+            cache.put(key, label);
+        }
+        return label;
+    }
+}
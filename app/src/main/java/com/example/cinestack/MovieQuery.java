@@ -0,0 +1,103 @@
+package com.example.cinestack;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * MovieQuery - Sort order and filters for the movie list
+ * Immutable: the with/sortedBy methods return a changed copy, so a query can be
+ * kept as the screen's filter state and used as part of a cache key.
+ * DatabaseHelper.queryMovies() turns it into indexed SQL.
+ */
+public final class MovieQuery {
+
+    /**
+     * Sort column; ties are broken by movie_id so paging is stable
+     */
+    public enum Sort { ADDED, TITLE, YEAR, GENRE }
+
+    // Insertion order, no filters (the plain paged list)
+    public static final MovieQuery DEFAULT =
+            new MovieQuery(Sort.ADDED, false,
+                    Collections.unmodifiableSortedSet(new TreeSet<String>()), null, null);
+
+    private final Sort sort;
+    private final boolean descending;
+    private final SortedSet<String> genres;
+    private final Integer minYear;
+    private final Integer maxYear;
+
+    private MovieQuery(Sort sort, boolean descending, SortedSet<String> genres,
+                       Integer minYear, Integer maxYear) {
+        this.sort = sort;
+        this.descending = descending;
+        this.genres = genres;
+        this.minYear = minYear;
+        this.maxYear = maxYear;
+    }
+
+    public MovieQuery sortedBy(Sort sort, boolean descending) {
+        return new MovieQuery(sort, descending, genres, minYear, maxYear);
+    }
+
+    /**
+     * @param genres Genres to keep, empty for all genres. Matched on the normalised key
+     *               (GenreLinker.normalize), not the text, so "sci fi" finds movies the user
+     *               filed as "Sci-Fi"; a movie matches if any of its genres does.
+     */
+    public MovieQuery withGenres(Collection<String> genres) {
+        SortedSet<String> copy = new TreeSet<>(genres);
+        return new MovieQuery(sort, descending, Collections.unmodifiableSortedSet(copy),
+                minYear, maxYear);
+    }
+
+    /**
+     * @param minYear Earliest year to keep, or null for no lower bound
+     * @param maxYear Latest year to keep, or null for no upper bound
+     */
+    public MovieQuery withYearRange(Integer minYear, Integer maxYear) {
+        return new MovieQuery(sort, descending, genres, minYear, maxYear);
+    }
+
+    public Sort getSort() { return sort; }
+    public boolean isDescending() { return descending; }
+    public SortedSet<String> getGenres() { return genres; }
+    public Integer getMinYear() { return minYear; }
+    public Integer getMaxYear() { return maxYear; }
+
+    public boolean isFiltered() {
+        return !genres.isEmpty() || minYear != null || maxYear != null;
+    }
+
+    /**
+     * Stable text form, used in cache keys
+     */
+    public String key() {
+        return sort + (descending ? ":desc" : ":asc") + ":" + genres + ":" + minYear + "-" + maxYear;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MovieQuery)) return false;
+        MovieQuery other = (MovieQuery) o;
+        return sort == other.sort
+                && descending == other.descending
+                && genres.equals(other.genres)
+                && Objects.equals(minYear, other.minYear)
+                && Objects.equals(maxYear, other.maxYear);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sort, descending, genres, minYear, maxYear);
+    }
+
+    @Override
+    public String toString() {
+        return key();
+    }
+}
@@ -0,0 +1,340 @@
+package com.example.cinestack;
+
+import android.content.Context;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.OperationCanceledException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * MovieRepository - Runs all DatabaseHelper work on a background executor
+ * Results are delivered back to the main thread through a Callback
+ *
+ * @author ICT3214 Group Project
+ * @version 1.0
+ */
+public class MovieRepository {
+
+    // SQLite serialises writes anyway, so a small fixed pool is enough
+    private static final int THREAD_COUNT = 2;
+    private static final ExecutorService DB_EXECUTOR = Executors.newFixedThreadPool(THREAD_COUNT);
+
+    // Shared by every screen, like the DatabaseHelper itself
+    private static final MovieCache MOVIE_CACHE = new MovieCache(32, 4L * 1024 * 1024);
+
+    private final DatabaseHelper databaseHelper;
+    private final Executor ioExecutor;
+    private final Executor mainExecutor;
+    private final MovieCache movieCache;
+
+    /**
+     * Result listener, always invoked on the main thread
+     */
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    /**
+     * Constructor
+     * @param context Any context, the application context is used internally
+     */
+    public MovieRepository(Context context) {
+        this(DatabaseHelper.getInstance(context), DB_EXECUTOR,
+                new Handler(Looper.getMainLooper())::post, MOVIE_CACHE);
+    }
+
+    // Visible for tests
+    MovieRepository(DatabaseHelper databaseHelper, Executor ioExecutor, Executor mainExecutor,
+                    MovieCache movieCache) {
+        this.databaseHelper = databaseHelper;
+        this.ioExecutor = ioExecutor;
+        this.mainExecutor = mainExecutor;
+        this.movieCache = movieCache;
+        // Writes patch the cache as they commit (registering twice is a no-op)
+        databaseHelper.getChangeBus().register(movieCache, Runnable::run);
+    }
+
+    /**
+     * Query result cache (hit/miss/eviction counters for diagnostics)
+     */
+    public MovieCache getCache() {
+        return movieCache;
+    }
+
+    /**
+     * Handle for abandoning a background operation
+     */
+    public interface Cancellable {
+        void cancel();
+    }
+
+    /**
+     * Get every committed change to the movies, on the main thread, until cancelled
+     */
+    public Cancellable observeChanges(MovieChangeBus.Listener listener) {
+        MovieChangeBus changeBus = databaseHelper.getChangeBus();
+        changeBus.register(listener, mainExecutor);
+        return () -> changeBus.unregister(listener);
+    }
+
+    // ================= MOVIE METHODS =================
+
+    public void getMoviesByUser(int userId, Callback<List<Movie>> callback) {
+        ioExecutor.execute(() -> {
+            List<Movie> movies = MovieRowMapper.readAll(databaseHelper.getMoviesByUser(userId));
+            deliver(callback, movies);
+        });
+    }
+
+    public void getMoviesPage(int userId, int afterMovieId, int limit,
+                              Callback<List<Movie>> callback) {
+        String key = "page:" + afterMovieId + ":" + limit;
+        List<Movie> cached = movieCache.get(userId, MovieCache.Kind.PAGE, key);
+        if (cached != null) {
+            deliver(callback, cached);
+            return;
+        }
+
+        ioExecutor.execute(() -> {
+            long version = movieCache.version();
+            List<Movie> movies = MovieRowMapper.readAll(
+                    databaseHelper.getMoviesPage(userId, afterMovieId, limit));
+            movieCache.put(userId, MovieCache.Kind.PAGE, key, movies, limit, version);
+            deliver(callback, movies);
+        });
+    }
+
+    /**
+     * Page of a sorted and/or filtered list
+     * @param after Last loaded row, or null for the first page
+     */
+    public void getMoviesPage(int userId, MovieQuery query, Movie after, int limit,
+                              Callback<List<Movie>> callback) {
+        if (MovieQuery.DEFAULT.equals(query)) {
+            getMoviesPage(userId, after == null ? 0 : after.getId(), limit, callback);
+            return;
+        }
+
+        String key = query.key() + ":" + (after == null ? 0 : after.getId()) + ":" + limit;
+        List<Movie> cached = movieCache.get(userId, MovieCache.Kind.QUERY, key);
+        if (cached != null) {
+            deliver(callback, cached);
+            return;
+        }
+
+        ioExecutor.execute(() -> {
+            long version = movieCache.version();
+            List<Movie> movies = MovieRowMapper.readAll(databaseHelper.queryMovies(userId, query, after, limit));
+            movieCache.put(userId, MovieCache.Kind.QUERY, key, movies, limit, version);
+            deliver(callback, movies);
+        });
+    }
+
+    /**
+     * Per-genre movie counts for the user, sorted by name
+     */
+    public void getGenreCounts(int userId, Callback<List<GenreCount>> callback) {
+        ioExecutor.execute(() -> deliver(callback, databaseHelper.getGenreCounts(userId)));
+    }
+
+    /**
+     * Collection summary for the stats screen
+     */
+    public void getUserStats(int userId, Callback<UserStats> callback) {
+        ioExecutor.execute(() -> deliver(callback, databaseHelper.getUserStats(userId)));
+    }
+
+    /**
+     * Search in the background
+     * @return Handle that stops the query (if still running) and suppresses its callback
+     */
+    public Cancellable searchMovies(int userId, String keyword, Callback<List<Movie>> callback) {
+        CancellationSignal signal = new CancellationSignal();
+        String key = keyword.trim().toLowerCase(Locale.ROOT);
+
+        List<Movie> cached = movieCache.get(userId, MovieCache.Kind.SEARCH, key);
+        if (cached != null) {
+            deliver(callback, cached, signal);
+            return signal::cancel;
+        }
+
+        ioExecutor.execute(() -> {
+            if (signal.isCanceled()) return;
+            try {
+                long version = movieCache.version();
+                List<Movie> movies = MovieRowMapper.readAll(databaseHelper.searchMovies(userId, keyword, signal));
+                movieCache.put(userId, MovieCache.Kind.SEARCH, key, movies, MovieCache.NO_LIMIT, version);
+                deliver(callback, movies, signal);
+            } catch (OperationCanceledException e) {
+                // A newer query replaced this one
+            }
+        });
+
+        return signal::cancel;
+    }
+
+    public void insertMovie(String title, String genre, int year, String review, int userId,
+                            Callback<Boolean> callback) {
+        ioExecutor.execute(() -> {
+            long movieId = databaseHelper.insertMovieAndGetId(title, genre, year, review, userId);
+            deliver(callback, movieId != -1);
+        });
+    }
+
+    /**
+     * Load one movie, from a cached list if one has it, else by primary key
+     * Cached rows whose review was cut short don't count: the movie always comes
+     * back complete. The callback gets null if the movie doesn't exist (or was deleted).
+     */
+    public void getMovie(int movieId, Callback<Movie> callback) {
+        Movie cached = movieCache.findMovie(movieId);
+        if (cached != null && !cached.isReviewTruncated()) {
+            deliver(callback, cached);
+            return;
+        }
+
+        ioExecutor.execute(() -> deliver(callback, databaseHelper.getMovie(movieId)));
+    }
+
+    /**
+     * Save an edited movie; the callback gets the row as stored, or null if it failed
+     */
+    public void updateMovie(Movie edited, Callback<Movie> callback) {
+        ioExecutor.execute(() -> deliver(callback, databaseHelper.updateMovie(edited)));
+    }
+
+    /**
+     * Delete movies in one background transaction; restoreMovies() undoes it
+     * The callback gets how many movies were deleted, or -1 if nothing was.
+     */
+    public void deleteMovies(List<Integer> movieIds, Callback<Integer> callback) {
+        ioExecutor.execute(() -> deliver(callback, databaseHelper.softDeleteMovies(movieIds)));
+    }
+
+    /**
+     * Bring back movies removed by deleteMovies()
+     * The callback gets how many movies were restored, or -1 if the transaction failed.
+     */
+    public void restoreMovies(List<Integer> movieIds, Callback<Integer> callback) {
+        ioExecutor.execute(() -> deliver(callback, databaseHelper.restoreMovies(movieIds)));
+    }
+
+    /**
+     * Stream movies from a CSV/JSON file into the user's library
+     * Rows are committed in chunks, so a file that fails halfway keeps the chunks before it.
+     * The callback gets null if the file could not be read.
+     */
+    public void importMovies(InputStream in, MovieImporter.Format format, int userId,
+                             Callback<MovieImporter.Result> callback) {
+        ioExecutor.execute(() -> {
+            MovieImporter.Result result = null;
+            try {
+                result = new MovieImporter(databaseHelper).importMovies(in, format, userId);
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+            deliver(callback, result);
+        });
+    }
+
+    /**
+     * Stream the user's library to a CSV/JSON file
+     * Progress and the final count are delivered on the main thread; the count is null
+     * if writing failed. Cancelling stops the export without calling the callback.
+     */
+    public Cancellable exportMovies(OutputStream out, MovieImporter.Format format, int userId,
+                                    MovieExporter.ProgressListener progressListener,
+                                    Callback<Integer> callback) {
+        CancellationSignal signal = new CancellationSignal();
+
+        ioExecutor.execute(() -> {
+            Integer written = null;
+            try {
+                written = new MovieExporter(databaseHelper).export(out, format, userId, signal,
+                        (done, total) -> mainExecutor.execute(() -> {
+                            if (!signal.isCanceled()) progressListener.onProgress(done, total);
+                        }));
+            } catch (OperationCanceledException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+            if (!signal.isCanceled()) deliver(callback, written);
+        });
+
+        return signal::cancel;
+    }
+
+    // ================= USER METHODS =================
+
+    /**
+     * Outcome of a background registration
+     */
+    public enum RegisterResult { SUCCESS, USERNAME_TAKEN, EMAIL_TAKEN, FAILED }
+
+    /**
+     * Check for duplicates and create the account; password hashing is deliberately slow
+     */
+    public void registerUser(String username, String email, String password, String fullName,
+                             Callback<RegisterResult> callback) {
+        ioExecutor.execute(() -> {
+            RegisterResult result;
+            if (databaseHelper.checkUsernameExists(username)) {
+                result = RegisterResult.USERNAME_TAKEN;
+            } else if (databaseHelper.checkEmailExists(email)) {
+                result = RegisterResult.EMAIL_TAKEN;
+            } else if (databaseHelper.registerUser(username, email, password, fullName)) {
+                result = RegisterResult.SUCCESS;
+            } else {
+                result = RegisterResult.FAILED;
+            }
+            deliver(callback, result);
+        });
+    }
+
+    public void getUserId(String username, String password, Callback<Integer> callback) {
+        ioExecutor.execute(() -> deliver(callback, databaseHelper.getUserId(username, password)));
+    }
+
+    /**
+     * Check credentials (username or email) in the background
+     * The callback gets the full user record, or null if the credentials are invalid.
+     */
+    public void authenticate(String login, String password, Callback<User> callback) {
+        ioExecutor.execute(() -> deliver(callback, databaseHelper.authenticate(login, password)));
+    }
+
+    /**
+     * Read the saved session in the background, so the first getUser() after a cold
+     * start doesn't parse the preferences file on the main thread
+     */
+    public void loadSession(SessionManager sessionManager, Callback<User> callback) {
+        ioExecutor.execute(() -> deliver(callback, sessionManager.getUser()));
+    }
+
+    // ================= HELPERS =================
+
+    private <T> void deliver(Callback<T> callback, T result) {
+        if (callback != null) {
+            mainExecutor.execute(() -> callback.onResult(result));
+        }
+    }
+
+    // Same, unless the operation is cancelled before the main thread gets to it
+    private <T> void deliver(Callback<T> callback, T result, CancellationSignal signal) {
+        if (callback != null && !signal.isCanceled()) {
+            mainExecutor.execute(() -> {
+                if (!signal.isCanceled()) callback.onResult(result);
+            });
+        }
+    }
+}
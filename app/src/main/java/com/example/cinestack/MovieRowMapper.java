@@ -0,0 +1,97 @@
+package com.example.cinestack;
+
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MovieRowMapper - Turns movie rows of a Cursor into Movie objects
+ * Column indexes are looked up once, when the mapper is created, instead of by name
+ * for every column of every row. Any projection that includes movie_id works:
+ * columns the query left out read as null / 0 / false (list queries have
+ * review_truncated, single-row reads don't).
+ *
+ * read() returns a new Movie per row, for lists that are kept (adapter, MovieCache).
+ * readInto() overwrites a Movie the caller owns, for streaming a large cursor without
+ * one Movie per row (the export); that instance must not be kept or shared.
+ */
+public class MovieRowMapper {
+
+    private static final int MISSING = -1;
+
+    private final Cursor cursor;
+    private final int idIndex;
+    private final int titleIndex;
+    private final int genreIndex;
+    private final int yearIndex;
+    private final int reviewIndex;
+    private final int reviewTruncatedIndex;
+
+    /**
+     * @param cursor Cursor over movie rows; the mapper reads its current row
+     * @throws IllegalArgumentException if the cursor has no movie_id column
+     */
+    public MovieRowMapper(Cursor cursor) {
+        this.cursor = cursor;
+        idIndex = cursor.getColumnIndexOrThrow("movie_id");
+        titleIndex = cursor.getColumnIndex("title");
+        genreIndex = cursor.getColumnIndex("genre");
+        yearIndex = cursor.getColumnIndex("year");
+        reviewIndex = cursor.getColumnIndex("review");
+        reviewTruncatedIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_REVIEW_TRUNCATED);
+    }
+
+    /**
+     * @return The current row as a new Movie
+     */
+    public Movie read() {
+        return new Movie(cursor.getInt(idIndex), getString(titleIndex), getString(genreIndex),
+                getInt(yearIndex), getString(reviewIndex), getInt(reviewTruncatedIndex) != 0);
+    }
+
+    /**
+     * Overwrite the given Movie with the current row
+     * @return The same instance
+     */
+    public Movie readInto(Movie movie) {
+        movie.set(cursor.getInt(idIndex), getString(titleIndex), getString(genreIndex),
+                getInt(yearIndex), getString(reviewIndex), getInt(reviewTruncatedIndex) != 0);
+        return movie;
+    }
+
+    /**
+     * Every row as a new Movie; closes the cursor
+     */
+    public static List<Movie> readAll(Cursor cursor) {
+        try {
+            List<Movie> movies = new ArrayList<>(cursor.getCount());
+            MovieRowMapper mapper = new MovieRowMapper(cursor);
+            while (cursor.moveToNext()) {
+                movies.add(mapper.read());
+            }
+            return movies;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * First row as a Movie (null if none); closes the cursor
+     */
+    public static Movie readFirst(Cursor cursor) {
+        try {
+            return cursor.moveToFirst() ? new MovieRowMapper(cursor).read() : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private String getString(int index) {
+        return index == MISSING ? null : cursor.getString(index);
+    }
+
+    private int getInt(int index) {
+        return index == MISSING ? 0 : cursor.getInt(index);
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.cinestack;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * PasswordHasher - Salted, iterated password hashing (PBKDF2-HMAC-SHA256)
+ * Stored format: "pbkdf2_sha256$iterations$salt$hash" (salt and hash in hex),
+ * so every row carries its own salt and cost and old rows keep verifying after
+ * the iteration count changes. Unsalted SHA-256 hex hashes from earlier versions
+ * are still accepted and reported by needsRehash().
+ *
+ * PBKDF2 is written out on top of Mac because SecretKeyFactory only offers the
+ * SHA-256 variant from API 26, and minSdk is 24.
+ */
+final class PasswordHasher {
+
+    private static final String ALGORITHM = "pbkdf2_sha256";
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BYTES = 32;
+
+    // Never go below this, however slow the device is
+    static final int MIN_ITERATIONS = 10_000;
+    // Cap so a very fast device doesn't make logins on slower ones painful after a restore
+    static final int MAX_ITERATIONS = 1_000_000;
+    // Stored counts within this factor of the current one are left alone
+    static final int REHASH_FACTOR = 2;
+    // Untimed runs before measuring, so the JIT has compiled the Mac loop
+    private static final int WARMUP_RUNS = 3;
+    // Timed runs; the median is used, so a GC or scheduler pause in one doesn't skew it
+    private static final int MEASURED_RUNS = 5;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final int iterations;
+    // Well-formed hash at the current cost that no password matches (all-zero salt and hash)
+    private final String unknownUserHash;
+
+    PasswordHasher(int iterations) {
+        this.iterations = Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, iterations));
+        this.unknownUserHash = ALGORITHM + "$" + this.iterations + "$" +
+                toHex(new byte[SALT_BYTES]) + "$" + toHex(new byte[HASH_BYTES]);
+    }
+
+    int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Hash with a fresh random salt
+     */
+    String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        byte[] hash = pbkdf2(password, salt, iterations, HASH_BYTES);
+
+        return ALGORITHM + "$" + iterations + "$" + toHex(salt) + "$" + toHex(hash);
+    }
+
+    /**
+     * Check a password against a stored hash (PBKDF2 or legacy SHA-256)
+     */
+    boolean verify(String password, String stored) {
+        if (stored == null) return false;
+
+        if (isLegacy(stored)) {
+            return MessageDigest.isEqual(
+                    legacySha256(password).getBytes(StandardCharsets.US_ASCII),
+                    stored.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4 || !ALGORITHM.equals(parts[0])) return false;
+
+        try {
+            int storedIterations = Integer.parseInt(parts[1]);
+            byte[] salt = fromHex(parts[2]);
+            byte[] expected = fromHex(parts[3]);
+            byte[] actual = pbkdf2(password, salt, storedIterations, expected.length);
+            return MessageDigest.isEqual(expected, actual);
+        } catch (IllegalArgumentException e) {
+            // Includes NumberFormatException from a corrupt iteration count
+            return false;
+        }
+    }
+
+    /**
+     * Run a full verify that always fails, so a login for an unknown account costs
+     * the same PBKDF2 time as a wrong password and can't be told apart by timing
+     */
+    void verifyUnknownUser(String password) {
+        verify(password, unknownUserHash);
+    }
+
+    /**
+     * Calibration varies from run to run (and across devices after a restore), so only a
+     * stored count under 1/REHASH_FACTOR of the current one triggers a rehash; otherwise
+     * every process start with a slightly higher estimate would rewrite the row on login.
+     * @return true if the stored hash is legacy or well below the current setting
+     */
+    boolean needsRehash(String stored) {
+        if (stored == null || isLegacy(stored)) return true;
+
+        String[] parts = stored.split("\\$");
+        try {
+            return parts.length != 4 || Integer.parseInt(parts[1]) < iterations / REHASH_FACTOR;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Pick an iteration count that takes about targetMillis on this device
+     * Times several short runs after a warm-up and scales the median linearly
+     * (PBKDF2 cost is linear in iterations).
+     */
+    static int calibrate(long targetMillis) {
+        byte[] salt = new byte[SALT_BYTES];
+        int sample = MIN_ITERATIONS;
+
+        // Warm up the JIT and Mac provider
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            pbkdf2("calibration", salt, sample, HASH_BYTES);
+        }
+
+        long[] runs = new long[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            pbkdf2("calibration", salt, sample, HASH_BYTES);
+            runs[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(runs);
+        long elapsedNanos = Math.max(1, runs[MEASURED_RUNS / 2]);
+
+        long iterations = sample * (targetMillis * 1_000_000L) / elapsedNanos;
+        return (int) Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, iterations));
+    }
+
+    // Old unsalted single-pass SHA-256, only used to verify legacy rows
+    static String legacySha256(String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return toHex(digest.digest(password.getBytes()));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // java.util.Base64 needs API 26, so salts and hashes are stored as hex
+    private static String toHex(byte[] bytes) {
+        StringBuilder hexString = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            String hex = Integer.toHexString(0xff & b);
+            if (hex.length() == 1) hexString.append('0');
+            hexString.append(hex);
+        }
+        return hexString.toString();
+    }
+
+    private static byte[] fromHex(String hex) {
+        if (hex.length() % 2 != 0) throw new IllegalArgumentException("Odd hex length");
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(i * 2), 16);
+            int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) throw new IllegalArgumentException("Bad hex digit");
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+
+    private static boolean isLegacy(String stored) {
+        return stored.length() == 64 && stored.indexOf('$') == -1;
+    }
+
+    // PBKDF2 (RFC 8018) with HMAC-SHA256
+    static byte[] pbkdf2(String password, byte[] salt, int iterations, int length) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            byte[] key = password.getBytes(StandardCharsets.UTF_8);
+            // HMAC rejects empty keys through SecretKeySpec; a single zero byte is equivalent
+            mac.init(new SecretKeySpec(key.length == 0 ? new byte[1] : key, MAC_ALGORITHM));
+
+            int macLength = mac.getMacLength();
+            byte[] result = new byte[length];
+            byte[] block = new byte[salt.length + 4];
+            System.arraycopy(salt, 0, block, 0, salt.length);
+
+            for (int blockIndex = 1, offset = 0; offset < length; blockIndex++, offset += macLength) {
+                block[salt.length] = (byte) (blockIndex >>> 24);
+                block[salt.length + 1] = (byte) (blockIndex >>> 16);
+                block[salt.length + 2] = (byte) (blockIndex >>> 8);
+                block[salt.length + 3] = (byte) blockIndex;
+
+                byte[] u = mac.doFinal(block);
+                byte[] t = u.clone();
+                for (int i = 1; i < iterations; i++) {
+                    u = mac.doFinal(u);
+                    for (int j = 0; j < t.length; j++) {
+                        t[j] ^= u[j];
+                    }
+                }
+                System.arraycopy(t, 0, result, offset, Math.min(macLength, length - offset));
+            }
+            return result;
+
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+}
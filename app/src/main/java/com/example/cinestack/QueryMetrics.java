@@ -0,0 +1,295 @@
+package com.example.cinestack;
+
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * QueryMetrics - Latency histograms and a slow-query log for DatabaseHelper
+ * Every instrumented method does:
+ *
+ *   long start = metrics.start();
+ *   ... query or write ...
+ *   metrics.end(Operation.X, start, rows, ...);
+ *
+ * Disabled, start() is one volatile read and end() returns straight away, so nothing
+ * is allocated. Enabled, a call only bumps preallocated counters; only a call slower
+ * than the threshold allocates, to log its SQL, bind arg count and query plan.
+ * Bind values are never kept: they include usernames and emails, and the report can
+ * be saved to a file and shared.
+ */
+public class QueryMetrics {
+
+    /**
+     * Instrumented DatabaseHelper methods
+     */
+    public enum Operation {
+        REGISTER_USER, AUTHENTICATE, CHECK_USERNAME, CHECK_EMAIL,
+        INSERT_MOVIE, INSERT_MOVIES, GET_MOVIE, GET_MOVIES_BY_USER, GET_MOVIES_PAGE,
+        QUERY_MOVIES, SEARCH_MOVIES, EXPORT_MOVIES, GET_GENRE_COUNTS, GET_USER_STATS,
+        UPDATE_MOVIE, SOFT_DELETE_MOVIES, RESTORE_MOVIES, DELETE_MOVIE, PURGE_DELETED_MOVIES
+    }
+
+    // start() result while disabled
+    static final long NOT_TIMING = Long.MIN_VALUE;
+
+    // About three frames: anything slower shows up as jank if it ever runs on the UI thread
+    static final long DEFAULT_SLOW_QUERY_MILLIS = 50;
+
+    // Slow queries kept, oldest dropped first
+    static final int SLOW_LOG_SIZE = 50;
+
+    // Histogram bucket upper bounds in microseconds (1-2-5 steps); one more bucket above
+    static final long[] BUCKET_BOUNDS_MICROS = {
+            10, 20, 50, 100, 200, 500,
+            1_000, 2_000, 5_000, 10_000, 20_000, 50_000,
+            100_000, 200_000, 500_000, 1_000_000, 2_000_000, 5_000_000
+    };
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    /**
+     * Counters for one operation; guarded by its own lock
+     */
+    private static final class Histogram {
+        final long[] buckets = new long[BUCKET_BOUNDS_MICROS.length + 1];
+        long count;
+        long rows;
+        long totalNanos;
+        long maxNanos;
+    }
+
+    /**
+     * One call slower than the threshold
+     */
+    public static final class SlowQuery {
+        public final long timestamp;
+        public final Operation operation;
+        public final long nanos;
+        public final int rows;
+        // Null for calls that ran several statements (writes, the stats summary)
+        public final String sql;
+        // How many values were bound; the values themselves are not recorded
+        public final int argCount;
+        public final List<String> plan;
+
+        SlowQuery(long timestamp, Operation operation, long nanos, int rows,
+                  String sql, int argCount, List<String> plan) {
+            this.timestamp = timestamp;
+            this.operation = operation;
+            this.nanos = nanos;
+            this.rows = rows;
+            this.sql = sql;
+            this.argCount = argCount;
+            this.plan = plan;
+        }
+    }
+
+    private final Histogram[] histograms = new Histogram[OPERATIONS.length];
+    private final ArrayDeque<SlowQuery> slowQueries = new ArrayDeque<>(SLOW_LOG_SIZE);
+    private volatile boolean enabled;
+    private volatile long slowQueryNanos = DEFAULT_SLOW_QUERY_MILLIS * 1_000_000;
+
+    public QueryMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new Histogram();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void setSlowQueryMillis(long millis) {
+        this.slowQueryNanos = millis * 1_000_000;
+    }
+
+    public long getSlowQueryMillis() {
+        return slowQueryNanos / 1_000_000;
+    }
+
+    // ================= RECORDING =================
+
+    /**
+     * @return The start time to pass to end(), or NOT_TIMING while disabled
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : NOT_TIMING;
+    }
+
+    /**
+     * Record a write (or any call with no single SQL statement to explain)
+     * @param rows Rows inserted/changed
+     */
+    public void end(Operation operation, long start, int rows) {
+        end(operation, start, rows, null, null, null);
+    }
+
+    /**
+     * Record a query; if it was slow, its plan is looked up on the same connection
+     * @param rows Rows returned
+     */
+    public void end(Operation operation, long start, int rows,
+                    SQLiteDatabase db, String sql, String[] args) {
+        if (start == NOT_TIMING) return;
+        long nanos = System.nanoTime() - start;
+
+        Histogram histogram = histograms[operation.ordinal()];
+        synchronized (histogram) {
+            histogram.buckets[bucketFor(nanos)]++;
+            histogram.count++;
+            histogram.rows += Math.max(rows, 0);
+            histogram.totalNanos += nanos;
+            histogram.maxNanos = Math.max(histogram.maxNanos, nanos);
+        }
+
+        if (nanos >= slowQueryNanos) {
+            logSlowQuery(new SlowQuery(System.currentTimeMillis(), operation, nanos, rows, sql,
+                    args == null ? 0 : args.length, explain(db, sql, args)));
+        }
+    }
+
+    public void reset() {
+        for (Histogram histogram : histograms) {
+            synchronized (histogram) {
+                Arrays.fill(histogram.buckets, 0);
+                histogram.count = histogram.rows = histogram.totalNanos = histogram.maxNanos = 0;
+            }
+        }
+        synchronized (slowQueries) {
+            slowQueries.clear();
+        }
+    }
+
+    static int bucketFor(long nanos) {
+        long micros = nanos / 1_000;
+        int index = Arrays.binarySearch(BUCKET_BOUNDS_MICROS, micros);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private void logSlowQuery(SlowQuery slowQuery) {
+        synchronized (slowQueries) {
+            if (slowQueries.size() == SLOW_LOG_SIZE) slowQueries.removeFirst();
+            slowQueries.addLast(slowQuery);
+        }
+    }
+
+    // EXPLAIN QUERY PLAN with the same bind args (the plan text never shows them); best effort, a failure is noted in the plan
+    private static List<String> explain(SQLiteDatabase db, String sql, String[] args) {
+        List<String> plan = new ArrayList<>();
+        if (db == null || sql == null) return plan;
+
+        try (Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args)) {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) plan.add(cursor.getString(detail));
+        } catch (SQLException | IllegalArgumentException e) {
+            plan.add("(plan unavailable: " + e.getMessage() + ")");
+        }
+        return plan;
+    }
+
+    // ================= READING =================
+
+    public long getCount(Operation operation) {
+        Histogram histogram = histograms[operation.ordinal()];
+        synchronized (histogram) {
+            return histogram.count;
+        }
+    }
+
+    public long getRows(Operation operation) {
+        Histogram histogram = histograms[operation.ordinal()];
+        synchronized (histogram) {
+            return histogram.rows;
+        }
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile, in microseconds
+     * (the exact maximum for the top bucket); 0 if nothing was recorded
+     */
+    public long getPercentileMicros(Operation operation, double percentile) {
+        Histogram histogram = histograms[operation.ordinal()];
+        synchronized (histogram) {
+            if (histogram.count == 0) return 0;
+
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * histogram.count));
+            long seen = 0;
+            for (int i = 0; i < BUCKET_BOUNDS_MICROS.length; i++) {
+                seen += histogram.buckets[i];
+                if (seen >= rank) return Math.min(BUCKET_BOUNDS_MICROS[i], histogram.maxNanos / 1_000);
+            }
+            return histogram.maxNanos / 1_000;
+        }
+    }
+
+    public List<SlowQuery> getSlowQueries() {
+        synchronized (slowQueries) {
+            return new ArrayList<>(slowQueries);
+        }
+    }
+
+    /**
+     * Plain-text report for the debug screen and the dump file
+     */
+    public String dump() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "%-22s %7s %8s %8s %8s %8s %8s %8s%n",
+                "operation", "calls", "rows", "mean", "p50", "p95", "p99", "max"));
+
+        for (Operation operation : OPERATIONS) {
+            Histogram histogram = histograms[operation.ordinal()];
+            long count, rows, totalNanos, maxNanos;
+            synchronized (histogram) {
+                count = histogram.count;
+                rows = histogram.rows;
+                totalNanos = histogram.totalNanos;
+                maxNanos = histogram.maxNanos;
+            }
+            if (count == 0) continue;
+
+            out.append(String.format(Locale.ROOT, "%-22s %7d %8d %8s %8s %8s %8s %8s%n",
+                    operation.name().toLowerCase(Locale.ROOT), count, rows,
+                    millis(totalNanos / count / 1_000),
+                    "<=" + millis(getPercentileMicros(operation, 50)),
+                    "<=" + millis(getPercentileMicros(operation, 95)),
+                    "<=" + millis(getPercentileMicros(operation, 99)),
+                    millis(maxNanos / 1_000)));
+        }
+        out.append("(times in ms; percentiles are histogram bucket bounds)\n");
+
+        List<SlowQuery> slow = getSlowQueries();
+        out.append('\n').append("Slow queries (over ").append(getSlowQueryMillis())
+                .append(" ms), newest last: ").append(slow.size()).append('\n');
+
+        SimpleDateFormat time = new SimpleDateFormat("HH:mm:ss.SSS", Locale.ROOT);
+        for (SlowQuery query : slow) {
+            out.append('\n').append(time.format(new Date(query.timestamp))).append("  ")
+                    .append(query.operation.name().toLowerCase(Locale.ROOT)).append("  ")
+                    .append(millis(query.nanos / 1_000)).append(" ms, ")
+                    .append(query.rows).append(" rows\n");
+            out.append("  ").append(query.sql == null ? "(several statements)" : query.sql).append('\n');
+            if (query.argCount > 0) {
+                out.append("  args: ").append(query.argCount).append(" bound (values not recorded)\n");
+            }
+            for (String step : query.plan) out.append("  plan: ").append(step).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static String millis(long micros) {
+        return String.format(Locale.ROOT, "%.2f", micros / 1000.0);
+    }
+}
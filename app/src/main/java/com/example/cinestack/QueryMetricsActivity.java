@@ -0,0 +1,119 @@
+package com.example.cinestack;
+
+import android.content.pm.ApplicationInfo;
+import android.os.Bundle;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SwitchCompat;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * QueryMetricsActivity - Debug screen for DatabaseHelper's latency histograms and slow queries
+ * Reached from the main menu in debuggable builds, and from the "Query performance" button
+ * on the Statistics screen in any build. In a release build, switching recording on asks
+ * first and is remembered; from then on the main menu shows the screen too. The report has
+ * timings, SQL and query plans but never bind values. "Save to file" writes it to
+ * files/query-metrics.txt, e.g. for: adb shell run-as com.example.cinestack cat files/query-metrics.txt
+ */
+public class QueryMetricsActivity extends AppCompatActivity {
+
+    static final String DUMP_FILE = "query-metrics.txt";
+
+    // Writes the report file off the main thread
+    private static final ExecutorService FILE_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private QueryMetrics metrics;
+    private TextView tvMetrics;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_query_metrics);
+        setTitle("Query metrics");
+
+        metrics = DatabaseHelper.getInstance(this).getMetrics();
+        tvMetrics = findViewById(R.id.tvMetrics);
+
+        SwitchCompat swRecording = findViewById(R.id.swRecording);
+        swRecording.setChecked(metrics.isEnabled());
+        boolean debuggable = (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        swRecording.setOnCheckedChangeListener((button, isChecked) -> {
+            if (isChecked && !debuggable) {
+                confirmRecording(swRecording);
+            } else {
+                setRecording(isChecked);
+            }
+        });
+
+        Button btnReset = findViewById(R.id.btnReset);
+        btnReset.setOnClickListener(v -> {
+            metrics.reset();
+            showReport();
+        });
+
+        Button btnSaveDump = findViewById(R.id.btnSaveDump);
+        btnSaveDump.setOnClickListener(v -> saveReport());
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showReport();
+    }
+
+    private void setRecording(boolean recording) {
+        metrics.setEnabled(recording);
+        DatabaseHelper.setQueryMetricsOptedIn(this, recording);
+        showReport();
+    }
+
+    // Release builds: say what gets recorded before turning it on
+    private void confirmRecording(SwitchCompat swRecording) {
+        new AlertDialog.Builder(this)
+                .setTitle("Record query performance?")
+                .setMessage("CineStack will time its database queries and keep the slowest ones " +
+                        "with their SQL, until you switch this off. Movie titles, reviews, " +
+                        "usernames and other values you enter are not recorded. Nothing leaves " +
+                        "the device unless you save and share the report.")
+                .setPositiveButton("Record", (dialog, which) -> setRecording(true))
+                .setNegativeButton("Cancel", (dialog, which) -> swRecording.setChecked(false))
+                .setOnCancelListener(dialog -> swRecording.setChecked(false))
+                .show();
+    }
+
+    private void showReport() {
+        tvMetrics.setText(metrics.dump());
+    }
+
+    private void saveReport() {
+        File file = new File(getFilesDir(), DUMP_FILE);
+        String report = metrics.dump();
+
+        FILE_EXECUTOR.execute(() -> {
+            boolean saved;
+            try (Writer writer = new FileWriter(file)) {
+                writer.write(report);
+                saved = true;
+            } catch (IOException e) {
+                saved = false;
+            }
+
+            boolean result = saved;
+            runOnUiThread(() -> {
+                if (isFinishing()) return;
+                Toast.makeText(this, result ? "Saved to " + file.getPath() : "Could not save the report",
+                        result ? Toast.LENGTH_LONG : Toast.LENGTH_SHORT).show();
+            });
+        });
+    }
+}
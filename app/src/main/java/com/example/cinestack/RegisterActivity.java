@@ -29,16 +29,16 @@ public class RegisterActivity extends AppCompatActivity {
     private Button btnRegister;
     private TextView tvLoginLink;
 
-    // Database Helper
-    private DatabaseHelper databaseHelper;
+    // Repository (hashing and database work run in the background)
+    private MovieRepository movieRepository;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_register);
 
-        // Initialize database helper
-        databaseHelper = new DatabaseHelper(this);
+        // Initialize repository
+        movieRepository = new MovieRepository(this);
 
         // Initialize UI components
         initializeViews();
@@ -113,24 +113,33 @@ public class RegisterActivity extends AppCompatActivity {
             return; // Stop if validation fails
         }
 
+        // Check for duplicates and create the account off the main thread
+        btnRegister.setEnabled(false);
+        movieRepository.registerUser(username, email, password, fullName,
+                result -> onRegisterResult(result, username));
+    }
+
+    /**
+     * Handles the result of the background registration
+     */
+    private void onRegisterResult(MovieRepository.RegisterResult result, String username) {
+        btnRegister.setEnabled(true);
+
         // Check if username already exists
-        if (databaseHelper.checkUsernameExists(username)) {
+        if (result == MovieRepository.RegisterResult.USERNAME_TAKEN) {
             tilUsername.setError("Username already taken");
             etUsername.requestFocus();
             return;
         }
 
         // Check if email already exists
-        if (databaseHelper.checkEmailExists(email)) {
+        if (result == MovieRepository.RegisterResult.EMAIL_TAKEN) {
             tilEmail.setError("Email already registered");
             etEmail.requestFocus();
             return;
         }
 
-        // Attempt to register user
-        boolean isRegistered = databaseHelper.registerUser(username, email, password, fullName);
-
-        if (isRegistered) {
+        if (result == MovieRepository.RegisterResult.SUCCESS) {
             // Registration successful
             Toast.makeText(this, "Registration successful! Please login.", Toast.LENGTH_LONG).show();
             
@@ -0,0 +1,72 @@
+package com.example.cinestack;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SchemaMigrator - Ordered, one-version-at-a-time schema upgrades
+ * Each step moves the database from version N-1 to N without dropping data.
+ * Fresh installs create the baseline schema and then run every step,
+ * so new and upgraded databases always end up with the same schema.
+ */
+final class SchemaMigrator {
+
+    /**
+     * One schema change, applied inside the open helper's upgrade transaction
+     */
+    interface Step {
+        void apply(SQLiteDatabase db);
+    }
+
+    private final int baselineVersion;
+    private final List<Step> steps = new ArrayList<>();
+
+    /**
+     * @param baselineVersion Oldest version that can be upgraded in place
+     */
+    SchemaMigrator(int baselineVersion) {
+        this.baselineVersion = baselineVersion;
+    }
+
+    /**
+     * Register the step that produces toVersion; steps must be added in order
+     */
+    SchemaMigrator add(int toVersion, Step step) {
+        if (toVersion != latestVersion() + 1) {
+            throw new IllegalArgumentException("Expected migration to version "
+                    + (latestVersion() + 1) + " but got " + toVersion);
+        }
+        steps.add(step);
+        return this;
+    }
+
+    int baselineVersion() {
+        return baselineVersion;
+    }
+
+    int latestVersion() {
+        return baselineVersion + steps.size();
+    }
+
+    /**
+     * @return false if the database is older than the baseline and must be recreated
+     */
+    boolean canMigrateFrom(int version) {
+        return version >= baselineVersion;
+    }
+
+    /**
+     * Apply every step after fromVersion up to and including toVersion
+     */
+    void migrate(SQLiteDatabase db, int fromVersion, int toVersion) {
+        if (!canMigrateFrom(fromVersion) || toVersion > latestVersion()) {
+            throw new IllegalArgumentException("No migration path from "
+                    + fromVersion + " to " + toVersion);
+        }
+        for (int version = fromVersion + 1; version <= toVersion; version++) {
+            steps.get(version - baselineVersion - 1).apply(db);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.cinestack;
+
+import java.util.List;
+
+/**
+ * SearchPipeline - Turns SearchView keystrokes into as few queries as possible
+ * Waits until typing pauses, cancels the previous query when a newer one starts
+ * and never delivers results for a query that has been superseded.
+ * All methods are expected to be called on the main thread.
+ */
+public class SearchPipeline {
+
+    public static final long DEFAULT_DEBOUNCE_MS = 300;
+
+    /**
+     * Runs a task after a delay (Handler.postDelayed in the app, a fake clock in tests)
+     */
+    public interface Scheduler {
+        MovieRepository.Cancellable schedule(Runnable task, long delayMillis);
+    }
+
+    /**
+     * Starts a background search and reports back on the main thread
+     */
+    public interface Searcher {
+        MovieRepository.Cancellable search(String query, MovieRepository.Callback<List<Movie>> callback);
+    }
+
+    private final Scheduler scheduler;
+    private final Searcher searcher;
+    private final MovieRepository.Callback<List<Movie>> resultListener;
+    private final long debounceMillis;
+
+    private MovieRepository.Cancellable pendingSearch;
+    private MovieRepository.Cancellable runningSearch;
+    // Bumped on every new query; results carrying an older value are stale
+    private int generation;
+
+    public SearchPipeline(Scheduler scheduler, Searcher searcher,
+                          MovieRepository.Callback<List<Movie>> resultListener,
+                          long debounceMillis) {
+        this.scheduler = scheduler;
+        this.searcher = searcher;
+        this.resultListener = resultListener;
+        this.debounceMillis = debounceMillis;
+    }
+
+    /**
+     * Feed the latest query text; only the last one typed within the debounce window runs
+     */
+    public void onQueryChanged(String query) {
+        cancel();
+        int queryGeneration = generation;
+
+        pendingSearch = scheduler.schedule(() -> {
+            pendingSearch = null;
+            runningSearch = searcher.search(query, movies -> {
+                if (queryGeneration != generation) return;
+                runningSearch = null;
+                resultListener.onResult(movies);
+            });
+        }, debounceMillis);
+    }
+
+    /**
+     * Drop any waiting or running query (e.g. the search box was cleared)
+     */
+    public void cancel() {
+        generation++;
+
+        if (pendingSearch != null) {
+            pendingSearch.cancel();
+            pendingSearch = null;
+        }
+        if (runningSearch != null) {
+            runningSearch.cancel();
+            runningSearch = null;
+        }
+    }
+}
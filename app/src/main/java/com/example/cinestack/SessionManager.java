@@ -7,7 +7,13 @@ import android.content.SharedPreferences;
 /**
  * SessionManager - Manages user login sessions using SharedPreferences
  * Keeps users logged in across app restarts
- * 
+ *
+ * The session is read from SharedPreferences once and then served from memory,
+ * so getUserId() on hot paths (list loads, search, inserts) is a field read.
+ * That first read parses the file, so screens that start with a session load it
+ * through MovieRepository.loadSession() on a background thread.
+ * Writes update memory first and are persisted asynchronously with apply().
+ *
  * @author ICT3214 Group Project
  * @version 1.0
  */
@@ -15,42 +21,65 @@ public class SessionManager {
 
     // SharedPreferences file name
     private static final String PREF_NAME = "CineStackSession";
-    
+
     // SharedPreferences keys
     private static final String KEY_IS_LOGGED_IN = "isLoggedIn";
+    private static final String KEY_USER_ID = "userId";
     private static final String KEY_USERNAME = "username";
     private static final String KEY_FULL_NAME = "fullName";
     private static final String KEY_EMAIL = "email";
 
-    // SharedPreferences instance
+    // Returned by getUserId() when nobody is logged in
+    public static final int NO_USER = -1;
+
+    private static SessionManager instance;
+
+    // SharedPreferences instance; opened on first use, since opening it starts reading
+    // the file from disk
     private SharedPreferences preferences;
-    private SharedPreferences.Editor editor;
-    private Context context;
+    private final Context context;
+
+    // In-memory copy of the session; loaded lazily, then kept in sync by every write
+    private volatile boolean loaded;
+    private volatile User currentUser;
+
+    /**
+     * Shared session for the whole process
+     * @param context Any context, the application context is used internally
+     */
+    public static synchronized SessionManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new SessionManager(context.getApplicationContext());
+        }
+        return instance;
+    }
 
     /**
-     * Constructor
-     * @param context Application context
+     * Prefer getInstance(); a fresh instance behaves like a process restart (used by tests)
      */
     public SessionManager(Context context) {
         this.context = context;
-        preferences = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
-        editor = preferences.edit();
     }
 
     /**
-     * Create login session
-     * Stores user information in SharedPreferences
-     * 
-     * @param username User's username
-     * @param fullName User's full name
-     * @param email User's email
+     * Create login session from an authenticated user
+     * Stores the whole record at once, so nothing needs re-querying later
+     *
+     * @param user User returned by DatabaseHelper.authenticate()
      */
-    public void createLoginSession(String username, String fullName, String email) {
-        editor.putBoolean(KEY_IS_LOGGED_IN, true);
-        editor.putString(KEY_USERNAME, username);
-        editor.putString(KEY_FULL_NAME, fullName);
-        editor.putString(KEY_EMAIL, email);
-        editor.commit(); // Use commit() instead of apply() to ensure data is saved immediately
+    public void createLoginSession(User user) {
+        synchronized (this) {
+            currentUser = user;
+            loaded = true;
+        }
+
+        preferences().edit()
+                .putBoolean(KEY_IS_LOGGED_IN, true)
+                .putInt(KEY_USER_ID, user.getId())
+                .putString(KEY_USERNAME, user.getUsername())
+                .putString(KEY_FULL_NAME, user.getFullName())
+                .putString(KEY_EMAIL, user.getEmail())
+                .apply();
     }
 
     /**
@@ -58,7 +87,39 @@ public class SessionManager {
      * @return true if user is logged in, false otherwise
      */
     public boolean isLoggedIn() {
-        return preferences.getBoolean(KEY_IS_LOGGED_IN, false);
+        return getUser() != null;
+    }
+
+    /**
+     * Get the logged in user
+     * @return The user, or null if not logged in
+     */
+    public User getUser() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    currentUser = readUser();
+                    loaded = true;
+                }
+            }
+        }
+        return currentUser;
+    }
+
+    /**
+     * Whether the session has been read from disk, so getUser() returns without I/O
+     */
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Get logged in user's id
+     * @return User id or NO_USER if not logged in
+     */
+    public int getUserId() {
+        User user = getUser();
+        return user == null ? NO_USER : user.getId();
     }
 
     /**
@@ -66,7 +127,8 @@ public class SessionManager {
      * @return Username or null if not logged in
      */
     public String getUsername() {
-        return preferences.getString(KEY_USERNAME, null);
+        User user = getUser();
+        return user == null ? null : user.getUsername();
     }
 
     /**
@@ -74,7 +136,8 @@ public class SessionManager {
      * @return Full name or null if not logged in
      */
     public String getFullName() {
-        return preferences.getString(KEY_FULL_NAME, null);
+        User user = getUser();
+        return user == null ? null : user.getFullName();
     }
 
     /**
@@ -82,7 +145,8 @@ public class SessionManager {
      * @return Email or null if not logged in
      */
     public String getEmail() {
-        return preferences.getString(KEY_EMAIL, null);
+        User user = getUser();
+        return user == null ? null : user.getEmail();
     }
 
     /**
@@ -106,8 +170,7 @@ public class SessionManager {
      */
     public void logoutUser() {
         // Clear all session data
-        editor.clear();
-        editor.commit();
+        clearSession();
 
         // Redirect to LoginActivity
         Intent intent = new Intent(context, LoginActivity.class);
@@ -122,7 +185,31 @@ public class SessionManager {
      * Useful when you want to logout but handle navigation separately
      */
     public void clearSession() {
-        editor.clear();
-        editor.commit();
+        synchronized (this) {
+            currentUser = null;
+            loaded = true;
+        }
+        preferences().edit().clear().apply();
+    }
+
+    private synchronized SharedPreferences preferences() {
+        if (preferences == null) {
+            preferences = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        }
+        return preferences;
+    }
+
+    // Sessions saved before the user id was stored count as logged out
+    private User readUser() {
+        SharedPreferences preferences = preferences();
+        if (!preferences.getBoolean(KEY_IS_LOGGED_IN, false)) return null;
+
+        int userId = preferences.getInt(KEY_USER_ID, NO_USER);
+        if (userId == NO_USER) return null;
+
+        return new User(userId,
+                preferences.getString(KEY_USERNAME, null),
+                preferences.getString(KEY_EMAIL, null),
+                preferences.getString(KEY_FULL_NAME, null));
     }
 }
@@ -0,0 +1,83 @@
+package com.example.cinestack;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.Locale;
+
+/**
+ * StartupTrace - Times the phases of a screen's cold start
+ * Each phase is a trace section (visible in Perfetto / systrace as "LoginActivity.inflate")
+ * and is timed here as well; once the first frame is drawn the timings are logged as one line:
+ *
+ *   LoginActivity: inflate 41.20 ms, views 0.31 ms | first frame 512 ms after process start
+ *
+ * afterFirstDraw() is also how a screen defers its disk work (database, session) until
+ * there is something on screen. All methods are expected to be called on the main thread.
+ */
+public class StartupTrace {
+
+    static final String TAG = "CineStackStartup";
+
+    private final String screen;
+    private final StringBuilder phases = new StringBuilder();
+    private String currentPhase;
+    private long phaseStart;
+
+    /**
+     * @param screen Prefix of the trace sections, normally the activity's class name
+     */
+    public StartupTrace(String screen) {
+        this.screen = screen;
+    }
+
+    /**
+     * Start a phase; phases don't nest, so the previous one must have ended
+     */
+    public void begin(String phase) {
+        if (currentPhase != null) {
+            throw new IllegalStateException(currentPhase + " has not ended");
+        }
+        currentPhase = phase;
+        Trace.beginSection(screen + "." + phase);
+        phaseStart = System.nanoTime();
+    }
+
+    public void end() {
+        long nanos = System.nanoTime() - phaseStart;
+        Trace.endSection();
+
+        if (phases.length() > 0) phases.append(", ");
+        phases.append(String.format(Locale.ROOT, "%s %.2f ms", currentPhase, nanos / 1_000_000.0));
+        currentPhase = null;
+    }
+
+    /**
+     * Run an action once the view's window has drawn its first frame, then log the timings
+     * The action runs on the main thread, after the frame (not just before it).
+     */
+    public void afterFirstDraw(View view, Runnable action) {
+        Handler handler = new Handler(Looper.getMainLooper());
+
+        view.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                view.getViewTreeObserver().removeOnPreDrawListener(this);
+                // The frame is drawn as soon as this returns; the post runs after it
+                handler.postAtFrontOfQueue(() -> {
+                    Log.i(TAG, screen + ": " + phases + " | first frame "
+                            + (SystemClock.uptimeMillis() - Process.getStartUptimeMillis())
+                            + " ms after process start");
+                    action.run();
+                });
+                return true;
+            }
+        });
+    }
+}
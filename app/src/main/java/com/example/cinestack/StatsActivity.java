@@ -0,0 +1,69 @@
+package com.example.cinestack;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.widget.Button;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * StatsActivity - Totals, movies per genre and movies per year for the logged in user
+ * Everything comes from the trigger-maintained summary tables, so the screen
+ * opens just as fast for a large collection as for a small one.
+ */
+public class StatsActivity extends AppCompatActivity {
+
+    private TextView tvTotalMovies, tvReviewCount, tvGenreStats, tvYearStats;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_stats);
+        setTitle("Statistics");
+
+        tvTotalMovies = findViewById(R.id.tvTotalMovies);
+        tvReviewCount = findViewById(R.id.tvReviewCount);
+        tvGenreStats = findViewById(R.id.tvGenreStats);
+        tvYearStats = findViewById(R.id.tvYearStats);
+
+        // The way into the query metrics screen in release builds, which lack the menu item
+        Button btnQueryMetrics = findViewById(R.id.btnQueryMetrics);
+        btnQueryMetrics.setOnClickListener(v ->
+                startActivity(new Intent(this, QueryMetricsActivity.class)));
+
+        int userId = SessionManager.getInstance(this).getUserId();
+
+        if (userId == SessionManager.NO_USER) {
+            finish();
+            return;
+        }
+
+        new MovieRepository(this).getUserStats(userId, this::showStats);
+    }
+
+    private void showStats(UserStats stats) {
+        tvTotalMovies.setText(stats.getMovieCount() + " movies");
+        tvReviewCount.setText(stats.getReviewCount() + " reviews written");
+
+        StringBuilder genres = new StringBuilder();
+        for (GenreCount genre : stats.getMoviesPerGenre()) {
+            if (genres.length() > 0) genres.append('\n');
+            genres.append(genre.getName()).append(": ").append(genre.getCount());
+        }
+        tvGenreStats.setText(genres.length() == 0 ? "No genres yet" : genres);
+
+        // Newest years first
+        List<Map.Entry<Integer, Integer>> perYear = new ArrayList<>(stats.getMoviesPerYear().entrySet());
+        StringBuilder years = new StringBuilder();
+        for (int i = perYear.size() - 1; i >= 0; i--) {
+            if (years.length() > 0) years.append('\n');
+            years.append(perYear.get(i).getKey()).append(": ").append(perYear.get(i).getValue());
+        }
+        tvYearStats.setText(years.length() == 0 ? "No movies yet" : years);
+    }
+}
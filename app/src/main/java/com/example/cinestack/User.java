@@ -0,0 +1,25 @@
+package com.example.cinestack;
+
+/**
+ * User - A signed-in account, as returned by DatabaseHelper.authenticate()
+ * Never carries the password hash.
+ */
+public class User {
+
+    private final int id;
+    private final String username;
+    private final String email;
+    private final String fullName;
+
+    public User(int id, String username, String email, String fullName) {
+        this.id = id;
+        this.username = username;
+        this.email = email;
+        this.fullName = fullName;
+    }
+
+    public int getId() { return id; }
+    public String getUsername() { return username; }
+    public String getEmail() { return email; }
+    public String getFullName() { return fullName; }
+}
@@ -0,0 +1,34 @@
+package com.example.cinestack;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+
+/**
+ * UserStats - Summary of one user's collection for the stats screen
+ * Built from the summary tables by DatabaseHelper.getUserStats()
+ */
+public class UserStats {
+
+    private final int movieCount;
+    private final int reviewCount;
+    private final SortedMap<Integer, Integer> moviesPerYear;
+    private final List<GenreCount> moviesPerGenre;
+
+    public UserStats(int movieCount, int reviewCount,
+                     SortedMap<Integer, Integer> moviesPerYear, List<GenreCount> moviesPerGenre) {
+        this.movieCount = movieCount;
+        this.reviewCount = reviewCount;
+        this.moviesPerYear = Collections.unmodifiableSortedMap(moviesPerYear);
+        this.moviesPerGenre = Collections.unmodifiableList(moviesPerGenre);
+    }
+
+    public int getMovieCount() { return movieCount; }
+    public int getReviewCount() { return reviewCount; }
+
+    // Year -> number of movies, oldest year first
+    public SortedMap<Integer, Integer> getMoviesPerYear() { return moviesPerYear; }
+
+    // Sorted by genre name; a movie with several genres counts once in each
+    public List<GenreCount> getMoviesPerGenre() { return moviesPerGenre; }
+}
@@ -0,0 +1,131 @@
+package com.example.cinestack;
+
+import android.content.Context;
+import android.os.Looper;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.shadows.ShadowLog;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * The first frame of the launch screens is drawn before any database work starts.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ColdStartTest {
+
+    // Not a user other tests have cached lists for
+    private static final int USER = 42;
+
+    private Context context;
+    private File database;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        // A cold process: no helper yet, no database file
+        ReflectionHelpers.setStaticField(DatabaseHelper.class, "instance", null);
+        String name = DatabaseHelper.getInstance(context).getDatabaseName();
+        context.deleteDatabase(name);
+        database = context.getDatabasePath(name);
+    }
+
+    @After
+    public void tearDown() {
+        DatabaseHelper.getInstance(context).close();
+        ReflectionHelpers.setStaticField(DatabaseHelper.class, "instance", null);
+        context.deleteDatabase(database.getName());
+    }
+
+    @Test
+    public void mainActivity_drawsBeforeTheDatabaseIsOpened_thenLoads() throws Exception {
+        SessionManager.getInstance(context).createLoginSession(
+                new User(USER, "ana", "ana@example.com", "Ana Silva"));
+        MovieCache cache = new MovieRepository(context).getCache();
+        long reads = cache.hitCount() + cache.missCount();
+
+        ActivityController<MainActivity> main = Robolectric.buildActivity(MainActivity.class).create();
+        FirstDraw firstDraw = new FirstDraw(main.get().getWindow().getDecorView(),
+                () -> database.exists() || cache.hitCount() + cache.missCount() != reads);
+
+        main.start().resume().visible();
+        drawFrames();
+
+        assertTrue("no frame was drawn", firstDraw.drawn);
+        assertFalse("the database was used before the first frame", firstDraw.databaseUsed);
+
+        // Then the list loads as usual
+        await(database::exists);
+        assertTrue(ShadowLog.getLogsForTag(StartupTrace.TAG).get(0).msg.startsWith("MainActivity: inflate"));
+    }
+
+    @Test
+    public void loginActivity_neverOpensTheDatabase_untilLogin() {
+        ActivityController<LoginActivity> login = Robolectric.buildActivity(LoginActivity.class).create();
+        FirstDraw firstDraw = new FirstDraw(login.get().getWindow().getDecorView(), database::exists);
+
+        login.start().resume().visible();
+        drawFrames();
+
+        assertTrue("no frame was drawn", firstDraw.drawn);
+        assertFalse(firstDraw.databaseUsed);
+        assertFalse(database.exists());
+    }
+
+    /**
+     * Checks for database use at the first frame, before anything queued by the frame runs
+     */
+    private static class FirstDraw implements ViewTreeObserver.OnPreDrawListener {
+
+        private final View view;
+        private final BooleanSupplier databaseUsedCheck;
+        boolean drawn;
+        boolean databaseUsed;
+
+        FirstDraw(View view, BooleanSupplier databaseUsedCheck) {
+            this.view = view;
+            this.databaseUsedCheck = databaseUsedCheck;
+            view.getViewTreeObserver().addOnPreDrawListener(this);
+        }
+
+        @Override
+        public boolean onPreDraw() {
+            view.getViewTreeObserver().removeOnPreDrawListener(this);
+            drawn = true;
+            databaseUsed = databaseUsedCheck.getAsBoolean();
+            return true;
+        }
+    }
+
+    // Let the choreographer run a few frames
+    private static void drawFrames() {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(100));
+    }
+
+    // Background work (database, list diffing) posts its results to the main looper
+    private static void await(BooleanSupplier condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            shadowOf(Looper.getMainLooper()).idle();
+            if (condition.getAsBoolean()) return;
+            Thread.sleep(5);
+        }
+        fail("timed out");
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.cinestack;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.JsonWriter;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Latency of the DatabaseHelper operations on the desktop JVM (Robolectric's SQLite),
+ * at several library sizes, so a change can be measured without a device.
+ *
+ * Skipped by the normal unit test run. To run it:
+ *   ./gradlew :app:testDebugUnitTest --tests '*DataLayerBenchmark' -Pbenchmark
+ *
+ * Each call is timed on its own with System.nanoTime() after a warm-up; this is a plain
+ * test harness, not JMH. Results are written to app/build/benchmarks/data-layer.json
+ * (layout described above writeJson), so runs from two commits can be diffed. The numbers
+ * are desktop SQLite's: compare them with each other, not with the device benchmarks.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DataLayerBenchmark {
+
+    private static final String DB_NAME = "data_layer_benchmark.db";
+    private static final int USER = 1;
+    private static final int[] LIBRARY_SIZES = {100, 1_000, 10_000};
+    private static final String[] GENRES = {"Drama", "Sci-Fi", "Comedy", "Horror", "Crime, Thriller"};
+    private static final String[] KEYWORDS = {"movie 12", "drama", "review", "sci"};
+    private static final String USERNAME = "bench";
+    private static final String PASSWORD = "bench-password";
+
+    private Context context;
+    private DatabaseHelper helper;
+    private final Random random = new Random(42);
+    // Read from every result, so no query can be skipped as dead code
+    private long checksum;
+
+    /**
+     * One operation at one library size, timed per call
+     */
+    private interface Operation {
+        void run(int call);
+    }
+
+    private static final class Result {
+        final String operation;
+        final int librarySize;
+        final int warmupCalls;
+        final long[] nanos;
+
+        Result(String operation, int librarySize, int warmupCalls, long[] nanos) {
+            this.operation = operation;
+            this.librarySize = librarySize;
+            this.warmupCalls = warmupCalls;
+            this.nanos = nanos;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        assumeTrue("run with -Pbenchmark", Boolean.getBoolean("cinestack.benchmark"));
+        context = ApplicationProvider.getApplicationContext();
+    }
+
+    @After
+    public void tearDown() {
+        if (helper != null) helper.close();
+        if (context != null) context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void dataLayer() throws IOException {
+        List<Result> results = new ArrayList<>();
+        for (int librarySize : LIBRARY_SIZES) {
+            measureLibrary(librarySize, results);
+        }
+
+        File output = new File(System.getProperty("cinestack.benchmark.output",
+                "build/benchmarks/data-layer.json"));
+        writeJson(output, results);
+        assertTrue(output.getPath(), output.length() > 0);
+        assertNotEquals(0, checksum);
+    }
+
+    private void measureLibrary(int librarySize, List<Result> results) {
+        context.deleteDatabase(DB_NAME);
+        helper = new DatabaseHelper(context, DB_NAME);
+        // The smallest allowed hash cost, so "authenticate" finishes in reasonable time;
+        // it is still dominated by PBKDF2, which is why the lookup is timed on its own
+        helper.setPasswordHasher(new PasswordHasher(PasswordHasher.MIN_ITERATIONS));
+        assertTrue(helper.registerUser(USERNAME, "bench@example.com", PASSWORD, "Bench"));
+
+        List<Movie> movies = new ArrayList<>(librarySize);
+        for (int i = 0; i < librarySize; i++) {
+            movies.add(new Movie(0, "Movie " + i, GENRES[i % GENRES.length], 1950 + i % 70,
+                    i % 3 == 0 ? "" : "Review of movie " + i));
+        }
+        assertEquals(librarySize, helper.insertMovies(movies, USER));
+        int[] movieIds = movieIds();
+
+        // Fewer calls for the larger libraries, where every list read touches every row
+        int iterations = Math.max(50, Math.min(1_000, 1_000_000 / librarySize));
+
+        // deleteMovie removes exactly the rows insertMovie added, so the reads below
+        // see the library at its nominal size
+        List<Integer> added = new ArrayList<>();
+        results.add(measure("insertMovie", librarySize, iterations, call -> added.add((int)
+                helper.insertMovieAndGetId("New movie " + call, "Drama", 2024, "Fresh", USER))));
+        results.add(measure("deleteMovie", librarySize, iterations,
+                call -> assertTrue(helper.deleteMovie(added.get(call)))));
+
+        results.add(measure("getMoviesByUser", librarySize, iterations,
+                call -> drain(helper.getMoviesByUser(USER))));
+        results.add(measure("getMoviesPage", librarySize, iterations,
+                call -> drain(helper.getMoviesPage(USER, movieIds[random.nextInt(movieIds.length)], 30))));
+        results.add(measure("searchMovies", librarySize, iterations,
+                call -> drain(helper.searchMovies(USER, KEYWORDS[call % KEYWORDS.length]))));
+        // The editor's load by id, then the save
+        results.add(measure("updateMovie", librarySize, iterations, call -> {
+            Movie movie = helper.getMovie(movieIds[random.nextInt(movieIds.length)]);
+            assertNotNull(helper.updateMovie(new Movie(movie.getId(), movie.getTitle(),
+                    movie.getGenre(), movie.getYear() + 1, movie.getReview())));
+        }));
+        // The account lookup a login runs, without the password check
+        results.add(measure("userByLogin", librarySize, iterations, call -> {
+            Cursor cursor = helper.getReadableDatabase().rawQuery(
+                    DatabaseHelper.SQL_USER_BY_LOGIN, new String[]{USERNAME, USERNAME});
+            assertTrue(cursor.moveToFirst());
+            checksum += cursor.getInt(0);
+            cursor.close();
+        }));
+        // The full login: lookup plus PBKDF2 at MIN_ITERATIONS
+        results.add(measure("authenticate", librarySize, iterations,
+                call -> checksum += helper.authenticate(USERNAME, PASSWORD).getId()));
+
+        helper.close();
+        helper = null;
+    }
+
+    // Warm up (JIT, SQLite page cache, statement cache), then time each call;
+    // calls are numbered 0, 1, 2... across both phases
+    private Result measure(String name, int librarySize, int iterations, Operation operation) {
+        int call = 0;
+        int warmupCalls = iterations / 5;
+        for (int i = 0; i < warmupCalls; i++) {
+            operation.run(call++);
+        }
+
+        long[] nanos = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            operation.run(call++);
+            nanos[i] = System.nanoTime() - start;
+        }
+        return new Result(name, librarySize, warmupCalls, nanos);
+    }
+
+    private int[] movieIds() {
+        Cursor cursor = helper.getMoviesByUser(USER);
+        int[] movieIds = new int[cursor.getCount()];
+        int column = cursor.getColumnIndexOrThrow("movie_id");
+        for (int i = 0; cursor.moveToNext(); i++) movieIds[i] = cursor.getInt(column);
+        cursor.close();
+        return movieIds;
+    }
+
+    // Step through every row, reading a column, like a list load does
+    private void drain(Cursor cursor) {
+        int title = cursor.getColumnIndexOrThrow("title");
+        while (cursor.moveToNext()) {
+            checksum += cursor.getString(title).length();
+        }
+        cursor.close();
+    }
+
+    // ================= RESULT FILE =================
+
+    // Bumped whenever a field is renamed or its meaning changes
+    private static final int FORMAT_VERSION = 1;
+
+    /*
+     * {"format": "cinestack-data-layer", "formatVersion": 1, "java": ..., "vm": ...,
+     *  "results": [{"operation", "librarySize", "warmupCalls", "calls", "unit",
+     *               "mean", "standardDeviation", "percentiles": {...}, "samples": [...]}]}
+     * Each sample is one call timed with System.nanoTime(), in call order.
+     */
+    private static void writeJson(File output, List<Result> results) throws IOException {
+        File directory = output.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+
+        try (JsonWriter json = new JsonWriter(new FileWriter(output))) {
+            json.setIndent("  ");
+            json.beginObject();
+            json.name("format").value("cinestack-data-layer");
+            json.name("formatVersion").value(FORMAT_VERSION);
+            json.name("java").value(System.getProperty("java.version"));
+            json.name("vm").value(System.getProperty("java.vm.name") + " "
+                    + System.getProperty("java.vm.version"));
+
+            json.name("results").beginArray();
+            for (Result result : results) {
+                long[] sorted = result.nanos.clone();
+                Arrays.sort(sorted);
+                double mean = mean(sorted);
+
+                json.beginObject();
+                json.name("operation").value(result.operation);
+                json.name("librarySize").value(result.librarySize);
+                json.name("warmupCalls").value(result.warmupCalls);
+                json.name("calls").value(sorted.length);
+                json.name("unit").value("us");
+                json.name("mean").value(micros(mean));
+                json.name("standardDeviation").value(micros(standardDeviation(sorted, mean)));
+                json.name("percentiles").beginObject();
+                for (int percentile : new int[]{50, 90, 99, 100}) {
+                    json.name("p" + percentile).value(micros(percentile(sorted, percentile)));
+                }
+                json.endObject();
+                json.name("samples").beginArray();
+                for (long nanos : result.nanos) {
+                    json.value(micros(nanos));
+                }
+                json.endArray();
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+        }
+    }
+
+    private static double standardDeviation(long[] nanos, double mean) {
+        if (nanos.length < 2) return 0;
+        double squares = 0;
+        for (long value : nanos) squares += (value - mean) * (value - mean);
+        return Math.sqrt(squares / (nanos.length - 1));
+    }
+
+    private static double mean(long[] nanos) {
+        double total = 0;
+        for (long value : nanos) total += value;
+        return total / nanos.length;
+    }
+
+    // Nearest rank on a sorted array
+    private static double percentile(long[] sorted, double percentile) {
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    private static double micros(double nanos) {
+        return Math.round(nanos / 10.0) / 100.0;
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.cinestack;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Schema migrations keep data and the movie queries use the user indexes.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseMigrationTest {
+
+    private static final String DB_NAME = "migration_test.db";
+
+    private Context context;
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        if (helper != null) helper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void migrator_runsStepsInOrder_fromGivenVersion() {
+        List<Integer> applied = new ArrayList<>();
+        SchemaMigrator migrator = new SchemaMigrator(1)
+                .add(2, db -> applied.add(2))
+                .add(3, db -> applied.add(3))
+                .add(4, db -> applied.add(4));
+
+        migrator.migrate(null, 2, 4);
+
+        assertEquals(Arrays.asList(3, 4), applied);
+        assertEquals(4, migrator.latestVersion());
+        assertFalse(migrator.canMigrateFrom(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void migrator_rejectsGapInVersions() {
+        new SchemaMigrator(1).add(3, db -> { });
+    }
+
+    @Test
+    public void upgradeFromVersion3_keepsMoviesAndAddsIndexes() {
+        createVersion3Database();
+
+        helper = new DatabaseHelper(context, DB_NAME);
+        SQLiteDatabase db = helper.getReadableDatabase();
+
+        assertEquals(DatabaseHelper.MIGRATIONS.latestVersion(), db.getVersion());
+        assertEquals(2, count(db, "SELECT COUNT(*) FROM movies"));
+        assertEquals(1, count(db, "SELECT COUNT(*) FROM users"));
+        assertEquals(4, count(db, "SELECT COUNT(*) FROM sqlite_master WHERE type='index' " +
+                "AND name IN ('idx_movies_user', 'idx_movies_user_title', " +
+                "'idx_movies_user_year', 'idx_movies_user_genre')"));
+
+        // Search index was rebuilt from the existing rows
+        Cursor cursor = helper.searchMovies(1, "alien");
+        assertEquals(1, cursor.getCount());
+        cursor.close();
+    }
+
+    @Test
+    public void moviesByUser_usesUserIndex() {
+        helper = new DatabaseHelper(context, DB_NAME);
+
+        String plan = explain(DatabaseHelper.SQL_MOVIES_BY_USER, "1");
+
+        // Exactly the user_id index ("idx_movies_user" alone would match every user index)
+        assertTrue(plan, plan.contains("USING INDEX idx_movies_user (user_id=?)"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void moviesPage_usesUserIndex_withoutSorting() {
+        helper = new DatabaseHelper(context, DB_NAME);
+
+        String plan = explain(DatabaseHelper.SQL_MOVIES_PAGE, "1", "0", "30");
+
+        assertTrue(plan, plan.contains("USING INDEX idx_movies_user (user_id=? AND rowid>?)"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void upgradeFromVersion3_normalizesGenres() {
+        createVersion3Database();
+        SQLiteDatabase v3 = SQLiteDatabase.openDatabase(
+                context.getDatabasePath(DB_NAME).getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+        v3.execSQL("INSERT INTO movies (title, genre, year, review, user_id) VALUES ('Solaris', 'sci fi', 1972, '', 1)");
+        v3.close();
+
+        helper = new DatabaseHelper(context, DB_NAME);
+        SQLiteDatabase db = helper.getReadableDatabase();
+
+        // First spelling wins; the later variant is rewritten to it
+        assertEquals(2, count(db, "SELECT COUNT(*) FROM movies WHERE genre='Sci-Fi'"));
+        assertEquals(2, count(db, "SELECT COUNT(*) FROM genres"));
+        assertEquals(3, count(db, "SELECT COUNT(*) FROM movie_genres WHERE user_id=1"));
+        // v10: the user keeps the names they were already shown
+        assertEquals(1, count(db, "SELECT COUNT(*) FROM user_genres WHERE user_id=1 AND name='Sci-Fi'"));
+        assertEquals(2, count(db, "SELECT COUNT(*) FROM user_genres"));
+    }
+
+    @Test
+    public void upgradeFromVersion3_backfillsUserStats() {
+        createVersion3Database();
+
+        helper = new DatabaseHelper(context, DB_NAME);
+        UserStats stats = helper.getUserStats(1);
+
+        assertEquals(2, stats.getMovieCount());
+        assertEquals(1, stats.getReviewCount());
+        assertEquals(Integer.valueOf(1), stats.getMoviesPerYear().get(1979));
+        assertEquals(Integer.valueOf(1), stats.getMoviesPerYear().get(1995));
+        assertEquals(2, stats.getMoviesPerGenre().size());
+    }
+
+    private String explain(String sql, String... args) {
+        Cursor cursor = helper.getReadableDatabase().rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+        StringBuilder plan = new StringBuilder();
+        while (cursor.moveToNext()) {
+            plan.append(cursor.getString(cursor.getColumnIndexOrThrow("detail"))).append('\n');
+        }
+        cursor.close();
+        return plan.toString();
+    }
+
+    private static long count(SQLiteDatabase db, String sql) {
+        Cursor cursor = db.rawQuery(sql, null);
+        cursor.moveToFirst();
+        long count = cursor.getLong(0);
+        cursor.close();
+        return count;
+    }
+
+    // Schema exactly as shipped in DATABASE_VERSION 3
+    private void createVersion3Database() {
+        File file = context.getDatabasePath(DB_NAME);
+        file.getParentFile().mkdirs();
+
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(file, null);
+        db.execSQL("CREATE TABLE users (id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "username TEXT NOT NULL UNIQUE, email TEXT NOT NULL UNIQUE, " +
+                "password TEXT NOT NULL, full_name TEXT NOT NULL, created_at TEXT NOT NULL)");
+        db.execSQL("CREATE TABLE movies (movie_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "title TEXT NOT NULL, genre TEXT NOT NULL, year INTEGER NOT NULL, review TEXT, " +
+                "user_id INTEGER NOT NULL, " +
+                "FOREIGN KEY(user_id) REFERENCES users(id) ON DELETE CASCADE)");
+        db.execSQL("INSERT INTO users VALUES (1, 'ana', 'ana@example.com', 'x', 'Ana', '2024-01-01 00:00:00')");
+        db.execSQL("INSERT INTO movies (title, genre, year, review, user_id) VALUES ('Alien', 'Sci-Fi', 1979, 'Great', 1)");
+        db.execSQL("INSERT INTO movies (title, genre, year, review, user_id) VALUES ('Heat', 'Crime', 1995, '', 1)");
+        db.setVersion(3);
+        db.close();
+    }
+}
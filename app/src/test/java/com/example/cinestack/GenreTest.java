@@ -0,0 +1,136 @@
+package com.example.cinestack;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Genre normalisation, movie_genres links and per-user genre facets.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class GenreTest {
+
+    private static final String DB_NAME = "genre_test.db";
+
+    private Context context;
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DB_NAME);
+        helper = new DatabaseHelper(context, DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void normalize_ignoresCaseSpacesAndPunctuation() {
+        assertEquals("scifi", GenreLinker.normalize("Sci-Fi"));
+        assertEquals("scifi", GenreLinker.normalize(" sci fi "));
+        assertEquals("scifi", GenreLinker.normalize("SCI_FI"));
+        assertEquals("", GenreLinker.normalize(" - "));
+    }
+
+    @Test
+    public void variantSpellings_shareOneGenre() {
+        long alien = helper.insertMovieAndGetId("Alien", "Sci-Fi", 1979, "", 1);
+        long solaris = helper.insertMovieAndGetId("Solaris", "sci fi", 1972, "", 1);
+
+        assertEquals("Sci-Fi", helper.getMovie((int) solaris).getGenre());
+        assertEquals("Sci-Fi", helper.getMovie((int) alien).getGenre());
+        assertFacets(helper.getGenreCounts(1), "Sci-Fi", 2);
+    }
+
+    @Test
+    public void spellings_arePerUser() {
+        helper.insertMovieAndGetId("Alien", "Sci-Fi", 1979, "", 1);
+        long solaris = helper.insertMovieAndGetId("Solaris", "sci fi", 1972, "", 2);
+        helper.insertMovies(Collections.singletonList(new Movie(0, "Dune", "SCI-FI", 2021, "")), 2);
+
+        // One genre row, but user 2 never sees user 1's spelling
+        assertEquals("sci fi", helper.getMovie((int) solaris).getGenre());
+        assertFacets(helper.getGenreCounts(1), "Sci-Fi", 1);
+        assertFacets(helper.getGenreCounts(2), "sci fi", 2);
+
+        Movie edited = helper.updateMovie(new Movie((int) solaris, "Solaris", "Drama / SCI FI", 1972, ""));
+        assertEquals("Drama, sci fi", edited.getGenre());
+
+        // Filters match every spelling
+        Cursor cursor = helper.queryMovies(2,
+                MovieQuery.DEFAULT.withGenres(Collections.singletonList("Sci-Fi")), null, 30);
+        assertEquals(2, cursor.getCount());
+        cursor.close();
+    }
+
+    @Test
+    public void multiGenreField_linksEveryGenre() {
+        long id = helper.insertMovieAndGetId("Alien", "Horror / sci-fi, horror", 1979, "", 1);
+        helper.insertMovies(Arrays.asList(
+                new Movie(0, "Heat", "Crime", 1995, ""),
+                new Movie(0, "Se7en", "crime,Horror", 1995, "")), 1);
+
+        assertEquals("Horror, sci-fi", helper.getMovie((int) id).getGenre());
+        assertFacets(helper.getGenreCounts(1), "Crime", 2, "Horror", 2, "sci-fi", 1);
+
+        // Filtering on one genre finds movies filed under several
+        Cursor cursor = helper.queryMovies(1,
+                MovieQuery.DEFAULT.withGenres(Collections.singletonList("SCI FI")), null, 30);
+        assertEquals(1, cursor.getCount());
+        cursor.close();
+    }
+
+    @Test
+    public void facets_followUpdatesAndDeletes_perUser() {
+        long alien = helper.insertMovieAndGetId("Alien", "Sci-Fi", 1979, "", 1);
+        helper.insertMovieAndGetId("Heat", "Crime", 1995, "", 1);
+        helper.insertMovieAndGetId("Up", "Animation", 2009, "", 2);
+
+        assertNotNull(helper.updateMovie(new Movie((int) alien, "Alien", "Horror", 1979, "")));
+        assertFacets(helper.getGenreCounts(1), "Crime", 1, "Horror", 1);
+
+        assertTrue(helper.deleteMovie((int) alien));
+        assertFacets(helper.getGenreCounts(1), "Crime", 1);
+        assertFacets(helper.getGenreCounts(2), "Animation", 1);
+    }
+
+    @Test
+    public void genreCounts_readsMaintainedCountsByKey() {
+        Cursor cursor = helper.getReadableDatabase().rawQuery(
+                "EXPLAIN QUERY PLAN " + DatabaseHelper.SQL_GENRE_COUNTS, new String[]{"1"});
+        StringBuilder plan = new StringBuilder();
+        while (cursor.moveToNext()) {
+            plan.append(cursor.getString(cursor.getColumnIndexOrThrow("detail"))).append('\n');
+        }
+        cursor.close();
+
+        assertTrue(plan.toString(), plan.toString().contains("USING PRIMARY KEY (user_id=?)"));
+        assertFalse(plan.toString(), plan.toString().contains("TEMP B-TREE"));
+    }
+
+    // Expected facets as name, count pairs in order
+    private static void assertFacets(List<GenreCount> counts, Object... expected) {
+        assertEquals(expected.length / 2, counts.size());
+        for (int i = 0; i < counts.size(); i++) {
+            assertEquals(expected[i * 2], counts.get(i).getName());
+            assertEquals(expected[i * 2 + 1], counts.get(i).getCount());
+        }
+    }
+}
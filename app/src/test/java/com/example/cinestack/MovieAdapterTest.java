@@ -0,0 +1,292 @@
+package com.example.cinestack;
+
+import android.content.Context;
+import android.os.Looper;
+import android.view.View;
+
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Checks that MovieAdapter dispatches minimal updates instead of full rebinds,
+ * and that deletes (single or multi-select) update the list optimistically.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MovieAdapterTest {
+
+    @Test
+    public void singleEdit_dispatchesOneItemChanged() throws Exception {
+        MovieAdapter adapter = new MovieAdapter(null, after -> { });
+        RecordingObserver observer = new RecordingObserver();
+        adapter.registerAdapterDataObserver(observer);
+
+        List<Movie> movies = new ArrayList<>(Arrays.asList(
+                new Movie(1, "Alien", "Sci-Fi", 1979, ""),
+                new Movie(2, "Heat", "Crime", 1995, ""),
+                new Movie(3, "Up", "Animation", 2009, "")));
+        submitAndWait(adapter, movies);
+        observer.reset();
+
+        List<Movie> edited = new ArrayList<>(movies);
+        edited.set(1, new Movie(2, "Heat", "Thriller", 1995, ""));
+        submitAndWait(adapter, edited);
+
+        assertEquals(0, observer.fullChanges);
+        assertEquals(1, observer.itemsChanged);
+        assertEquals(MovieAdapter.PAYLOAD_GENRE, observer.lastPayload);
+        assertEquals(0, observer.structuralChanges);
+    }
+
+    @Test
+    public void delete_removesRowImmediately_andKeepsItRemoved() throws Exception {
+        FakeDeleteHelper helper = new FakeDeleteHelper(true);
+        List<Runnable> io = new ArrayList<>();
+        MovieAdapter adapter = new MovieAdapter(repository(helper, io), after -> { });
+        submitAndWait(adapter, threeMovies());
+
+        adapter.deleteMovie(adapter.getCurrentList().get(1));
+
+        // Gone from the screen before the database has been touched
+        awaitIds(adapter, 1, 3);
+        assertEquals(0, helper.deletes);
+
+        io.remove(0).run();
+        assertEquals(1, helper.deletes);
+        awaitIds(adapter, 1, 3);
+    }
+
+    @Test
+    public void failedDelete_putsRowBack_andReports() throws Exception {
+        FakeDeleteHelper helper = new FakeDeleteHelper(false);
+        List<Runnable> io = new ArrayList<>();
+        MovieAdapter adapter = new MovieAdapter(repository(helper, io), after -> { });
+        AtomicReference<List<Movie>> failed = new AtomicReference<>();
+        adapter.setOnDeleteFailedListener(failed::set);
+        submitAndWait(adapter, threeMovies());
+        Movie heat = adapter.getCurrentList().get(1);
+
+        adapter.deleteMovie(heat);
+        // A second click while the first delete is running is ignored
+        adapter.deleteMovie(heat);
+        awaitIds(adapter, 1, 3);
+        assertEquals(1, io.size());
+
+        io.remove(0).run();
+
+        awaitIds(adapter, 1, 2, 3);
+        assertEquals(Collections.singletonList(heat), failed.get());
+    }
+
+    @Test
+    public void selectedRows_areDeletedInOneCall_andUndoPutsThemBack() throws Exception {
+        FakeDeleteHelper helper = new FakeDeleteHelper(true);
+        List<Runnable> io = new ArrayList<>();
+        MovieAdapter adapter = new MovieAdapter(repository(helper, io), after -> { });
+        AtomicReference<MovieAdapter.Deletion> deleted = new AtomicReference<>();
+        adapter.setOnMoviesDeletedListener(deleted::set);
+        List<Movie> movies = threeMovies();
+        movies.add(new Movie(4, "Jaws", "Thriller", 1975, ""));
+        submitAndWait(adapter, movies);
+
+        RecyclerView recyclerView = attach(adapter);
+        longClick(recyclerView, 0);
+        longClick(recyclerView, 2);
+        assertEquals(2, adapter.getSelectedCount());
+
+        adapter.deleteSelected();
+        awaitIds(adapter, 2, 4);
+        assertEquals(0, adapter.getSelectedCount());
+
+        io.remove(0).run();
+        assertEquals(1, helper.batches);
+        assertEquals(Arrays.asList(1, 3), helper.lastIds);
+        assertEquals(2, deleted.get().getMovies().size());
+
+        AtomicReference<Boolean> undone = new AtomicReference<>();
+        adapter.undoDelete(deleted.get(), undone::set);
+        io.remove(0).run();
+
+        assertTrue(undone.get());
+        assertEquals(Arrays.asList(1, 3), helper.restoredIds);
+        awaitIds(adapter, 1, 2, 3, 4);
+    }
+
+    @Test
+    public void tappingACutOffReview_loadsTheWholeReview_intoThatRow() throws Exception {
+        Movie full = new Movie(2, "Heat", "Crime", 1995, "A long review, all of it");
+        DatabaseHelper helper = new DatabaseHelper(ApplicationProvider.getApplicationContext(), null) {
+            @Override
+            public Movie getMovie(int movieId) {
+                return movieId == full.getId() ? full : null;
+            }
+        };
+        List<Runnable> io = new ArrayList<>();
+        MovieAdapter adapter = new MovieAdapter(repository(helper, io), after -> { });
+        List<Movie> movies = threeMovies();
+        movies.set(1, new Movie(2, "Heat", "Crime", 1995, "A long review", true));
+        submitAndWait(adapter, movies);
+        RecyclerView recyclerView = attach(adapter);
+        RecordingObserver observer = new RecordingObserver();
+        adapter.registerAdapterDataObserver(observer);
+
+        // Complete reviews don't load anything
+        recyclerView.findViewHolderForAdapterPosition(0).itemView.performClick();
+        assertTrue(io.isEmpty());
+
+        recyclerView.findViewHolderForAdapterPosition(1).itemView.performClick();
+        io.remove(0).run();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (observer.itemsChanged == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+            shadowOf(Looper.getMainLooper()).idle();
+        }
+        assertEquals(full, adapter.getCurrentList().get(1));
+        assertEquals(1, observer.itemsChanged);
+        assertEquals(MovieAdapter.PAYLOAD_REVIEW, observer.lastPayload);
+    }
+
+    // Lays the list out so rows can be clicked like a user would
+    private static RecyclerView attach(MovieAdapter adapter) {
+        RecyclerView recyclerView = new RecyclerView(ApplicationProvider.getApplicationContext());
+        recyclerView.setLayoutManager(new LinearLayoutManager(recyclerView.getContext()));
+        recyclerView.setAdapter(adapter);
+        recyclerView.measure(View.MeasureSpec.makeMeasureSpec(480, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(4000, View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, 480, 4000);
+        return recyclerView;
+    }
+
+    private static void longClick(RecyclerView recyclerView, int position) {
+        recyclerView.findViewHolderForAdapterPosition(position).itemView.performLongClick();
+    }
+
+    private static List<Movie> threeMovies() {
+        return new ArrayList<>(Arrays.asList(
+                new Movie(1, "Alien", "Sci-Fi", 1979, ""),
+                new Movie(2, "Heat", "Crime", 1995, ""),
+                new Movie(3, "Up", "Animation", 2009, "")));
+    }
+
+    // Background work is queued for the test to run; results are delivered inline
+    private static MovieRepository repository(DatabaseHelper helper, List<Runnable> io) {
+        return new MovieRepository(helper, io::add, Runnable::run, new MovieCache(8, 1 << 20));
+    }
+
+    private static void awaitIds(MovieAdapter adapter, int... ids) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            shadowOf(Looper.getMainLooper()).idle();
+            if (Arrays.equals(ids, ids(adapter.getCurrentList()))) return;
+            Thread.sleep(5);
+        }
+        assertArrayEquals(ids, ids(adapter.getCurrentList()));
+    }
+
+    private static int[] ids(List<Movie> movies) {
+        int[] ids = new int[movies.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = movies.get(i).getId();
+        return ids;
+    }
+
+    private static class FakeDeleteHelper extends DatabaseHelper {
+
+        final boolean succeed;
+        int deletes;
+        int batches;
+        List<Integer> lastIds;
+        List<Integer> restoredIds;
+
+        FakeDeleteHelper(boolean succeed) {
+            super(ApplicationProvider.<Context>getApplicationContext(), null);
+            this.succeed = succeed;
+        }
+
+        @Override
+        public int softDeleteMovies(Collection<Integer> movieIds) {
+            batches++;
+            deletes += movieIds.size();
+            lastIds = new ArrayList<>(movieIds);
+            return succeed ? movieIds.size() : -1;
+        }
+
+        @Override
+        public int restoreMovies(Collection<Integer> movieIds) {
+            restoredIds = new ArrayList<>(movieIds);
+            return movieIds.size();
+        }
+    }
+
+    private static void submitAndWait(MovieAdapter adapter, List<Movie> movies) throws Exception {
+        AtomicBoolean committed = new AtomicBoolean();
+        adapter.submitList(movies, () -> committed.set(true));
+
+        // Diff runs on AsyncListDiffer's background thread, then posts to the main looper
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!committed.get() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+            shadowOf(Looper.getMainLooper()).idle();
+        }
+        assertTrue(committed.get());
+    }
+
+    private static class RecordingObserver extends RecyclerView.AdapterDataObserver {
+
+        int fullChanges;
+        int itemsChanged;
+        int structuralChanges;
+        Object lastPayload;
+
+        void reset() {
+            fullChanges = itemsChanged = structuralChanges = 0;
+            lastPayload = null;
+        }
+
+        @Override
+        public void onChanged() {
+            fullChanges++;
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            itemsChanged += itemCount;
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+            itemsChanged += itemCount;
+            lastPayload = payload;
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            structuralChanges++;
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            structuralChanges++;
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            structuralChanges++;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.cinestack;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * LRU bounds, write-through patching and coherence of MovieCache.
+ */
+public class MovieCacheTest {
+
+    private static final int USER = 1;
+    private static final int LIMIT = 5;
+
+    @Test
+    public void evictsLeastRecentlyUsed_andCounts() {
+        MovieCache cache = new MovieCache(2, Long.MAX_VALUE);
+        cache.put(USER, MovieCache.Kind.PAGE, "a", movies(1), LIMIT, cache.version());
+        cache.put(USER, MovieCache.Kind.PAGE, "b", movies(2), LIMIT, cache.version());
+
+        assertNotNull(cache.get(USER, MovieCache.Kind.PAGE, "a"));
+        cache.put(USER, MovieCache.Kind.PAGE, "c", movies(3), LIMIT, cache.version());
+
+        assertNull(cache.get(USER, MovieCache.Kind.PAGE, "b"));
+        assertNotNull(cache.get(USER, MovieCache.Kind.PAGE, "a"));
+        assertEquals(2, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    public void respectsByteBound() {
+        long oneEntry = MovieCache.estimateBytes(movies(1, 2));
+        MovieCache cache = new MovieCache(100, oneEntry);
+
+        cache.put(USER, MovieCache.Kind.PAGE, "a", movies(1, 2), LIMIT, cache.version());
+        cache.put(USER, MovieCache.Kind.PAGE, "b", movies(3, 4), LIMIT, cache.version());
+
+        assertEquals(1, cache.size());
+        assertTrue(cache.sizeBytes() <= oneEntry);
+    }
+
+    @Test
+    public void writesPatchCompletePages_andDropWhatTheyCannotPatch() {
+        MovieCache cache = new MovieCache(10, Long.MAX_VALUE);
+        cache.put(USER, MovieCache.Kind.PAGE, "last", movies(1, 2), LIMIT, cache.version());
+        cache.put(USER, MovieCache.Kind.PAGE, "full", movies(1, 2, 3, 4, 5), LIMIT, cache.version());
+        cache.put(USER, MovieCache.Kind.SEARCH, "ali", movies(1), MovieCache.NO_LIMIT, cache.version());
+
+        cache.onMovieInserted(USER, movie(9, "new"));
+        assertEquals(ids(1, 2, 9), ids(cache.get(USER, MovieCache.Kind.PAGE, "last")));
+        assertEquals(ids(1, 2, 3, 4, 5), ids(cache.get(USER, MovieCache.Kind.PAGE, "full")));
+        assertNull(cache.get(USER, MovieCache.Kind.SEARCH, "ali"));
+
+        cache.onMovieUpdated(movie(2, "renamed"));
+        assertEquals("renamed", cache.get(USER, MovieCache.Kind.PAGE, "last").get(1).getTitle());
+
+        cache.onMovieDeleted(2);
+        assertEquals(ids(1, 9), ids(cache.get(USER, MovieCache.Kind.PAGE, "last")));
+        assertNull(cache.get(USER, MovieCache.Kind.PAGE, "full"));
+    }
+
+    @Test
+    public void queryPages_haveTheirOwnKeys_andInvalidationRules() {
+        MovieCache cache = new MovieCache(10, Long.MAX_VALUE);
+        cache.put(USER, MovieCache.Kind.QUERY, "title:0:30", movies(1, 2), LIMIT, cache.version());
+        cache.put(USER + 1, MovieCache.Kind.QUERY, "title:0:30", movies(5), LIMIT, cache.version());
+
+        // A search for the same text is a different entry
+        assertNull(cache.get(USER, MovieCache.Kind.SEARCH, "title:0:30"));
+
+        // Deletes patch complete pages, like PAGE
+        cache.onMovieDeleted(2);
+        assertEquals(ids(1), ids(cache.get(USER, MovieCache.Kind.QUERY, "title:0:30")));
+
+        // Inserts drop only the inserting user's pages
+        cache.onMovieInserted(USER, movie(9, "new"));
+        assertNull(cache.get(USER, MovieCache.Kind.QUERY, "title:0:30"));
+        assertNotNull(cache.get(USER + 1, MovieCache.Kind.QUERY, "title:0:30"));
+
+        // Updates may reorder any page
+        cache.onMovieUpdated(movie(5, "renamed"));
+        assertNull(cache.get(USER + 1, MovieCache.Kind.QUERY, "title:0:30"));
+    }
+
+    @Test
+    public void findMovie_looksInEveryCachedList_withoutTouchingCounters() {
+        MovieCache cache = new MovieCache(10, Long.MAX_VALUE);
+        cache.put(USER, MovieCache.Kind.PAGE, "first", movies(1, 2), LIMIT, cache.version());
+        cache.put(USER, MovieCache.Kind.SEARCH, "heat", movies(7), MovieCache.NO_LIMIT, cache.version());
+
+        assertEquals("m7", cache.findMovie(7).getTitle());
+        assertNull(cache.findMovie(3));
+
+        cache.onMovieUpdated(movie(2, "renamed"));
+        assertEquals("renamed", cache.findMovie(2).getTitle());
+        assertEquals(0, cache.hitCount() + cache.missCount());
+    }
+
+    @Test
+    public void resultReadBeforeWrite_isNotCached() {
+        MovieCache cache = new MovieCache(10, Long.MAX_VALUE);
+        long version = cache.version();
+
+        cache.onMovieInserted(USER, movie(1, "new"));
+        cache.put(USER, MovieCache.Kind.PAGE, "first", Collections.emptyList(), LIMIT, version);
+
+        assertNull(cache.get(USER, MovieCache.Kind.PAGE, "first"));
+    }
+
+    @Test
+    public void writeThroughAfterReaderSawTheRow_doesNotDuplicate() {
+        MovieCache cache = new MovieCache(10, Long.MAX_VALUE);
+
+        // Row is already in the database when the reader queries, write-through arrives later
+        cache.put(USER, MovieCache.Kind.PAGE, "first", movies(1, 2), LIMIT, cache.version());
+        cache.onMovieInserted(USER, movie(2, "m2"));
+
+        assertEquals(ids(1, 2), ids(cache.get(USER, MovieCache.Kind.PAGE, "first")));
+    }
+
+    @Test
+    public void staysCoherentUnderConcurrentWrites() throws Exception {
+        MovieCache cache = new MovieCache(10, Long.MAX_VALUE);
+        FakeTable table = new FakeTable();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        CountDownLatch done = new CountDownLatch(4);
+
+        for (int thread = 0; thread < 2; thread++) {
+            int seed = thread;
+            // Writers: insert, update and delete through the table, then write through to the cache,
+            // atomically (DatabaseHelper holds its write lock from commit to publish)
+            pool.execute(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 2000; i++) {
+                    int op = random.nextInt(3);
+                    synchronized (table) {
+                        if (op == 0) {
+                            cache.onMovieInserted(USER, table.insert("t" + i));
+                        } else if (op == 1) {
+                            Movie updated = table.update(random.nextInt(table.nextId()), "u" + i);
+                            if (updated != null) cache.onMovieUpdated(updated);
+                        } else {
+                            int id = random.nextInt(table.nextId());
+                            if (table.delete(id)) cache.onMovieDeleted(id);
+                        }
+                    }
+                }
+                done.countDown();
+            });
+            // Readers: the same miss-then-put sequence MovieRepository uses
+            pool.execute(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    if (cache.get(USER, MovieCache.Kind.PAGE, "all") == null) {
+                        long version = cache.version();
+                        cache.put(USER, MovieCache.Kind.PAGE, "all", table.firstPage(50), 50, version);
+                    }
+                }
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        List<Movie> cached = cache.get(USER, MovieCache.Kind.PAGE, "all");
+        if (cached != null) {
+            assertEquals(table.firstPage(50), cached);
+        }
+    }
+
+    // Thread-safe stand-in for the movies table, ordered by id
+    private static class FakeTable {
+        private final TreeMap<Integer, Movie> rows = new TreeMap<>();
+        private int nextId = 1;
+
+        synchronized Movie insert(String title) {
+            Movie movie = movie(nextId++, title);
+            rows.put(movie.getId(), movie);
+            return movie;
+        }
+
+        synchronized Movie update(int id, String title) {
+            if (!rows.containsKey(id)) return null;
+            Movie movie = movie(id, title);
+            rows.put(id, movie);
+            return movie;
+        }
+
+        synchronized boolean delete(int id) {
+            return rows.remove(id) != null;
+        }
+
+        synchronized int nextId() {
+            return nextId;
+        }
+
+        synchronized List<Movie> firstPage(int limit) {
+            List<Movie> page = new ArrayList<>();
+            for (Movie movie : rows.values()) {
+                if (page.size() == limit) break;
+                page.add(movie);
+            }
+            return page;
+        }
+    }
+
+    private static Movie movie(int id, String title) {
+        return new Movie(id, title, "Drama", 2000, "");
+    }
+
+    private static List<Movie> movies(int... ids) {
+        List<Movie> movies = new ArrayList<>();
+        for (int id : ids) movies.add(movie(id, "m" + id));
+        return movies;
+    }
+
+    private static List<Integer> ids(int... ids) {
+        List<Integer> list = new ArrayList<>();
+        for (int id : ids) list.add(id);
+        return list;
+    }
+
+    private static List<Integer> ids(List<Movie> movies) {
+        List<Integer> list = new ArrayList<>();
+        for (Movie movie : movies) list.add(movie.getId());
+        return list;
+    }
+}
@@ -0,0 +1,255 @@
+package com.example.cinestack;
+
+import android.content.Context;
+import android.os.Looper;
+import android.widget.EditText;
+
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * DatabaseHelper writes publish one change each, and the open list applies it
+ * without re-running its query.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MovieChangeTest {
+
+    private static final String DB_NAME = "movie_change_test.db";
+    private static final int USER = 1;
+
+    private Context context;
+    private DatabaseHelper helper;
+    private String defaultDatabase;
+    private final List<MovieChange> changes = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DB_NAME);
+        helper = new DatabaseHelper(context, DB_NAME);
+        helper.getChangeBus().register(changes::add, Runnable::run);
+
+        // The activity tests use the app's own helper; start each one from an empty database
+        ReflectionHelpers.setStaticField(DatabaseHelper.class, "instance", null);
+        defaultDatabase = DatabaseHelper.getInstance(context).getDatabaseName();
+        context.deleteDatabase(defaultDatabase);
+        // Shared across helpers, so it may still hold lists from another test's database
+        new MovieRepository(context).getCache().invalidateAll();
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+
+        SessionManager.getInstance(context).clearSession();
+        DatabaseHelper.getInstance(context).close();
+        ReflectionHelpers.setStaticField(DatabaseHelper.class, "instance", null);
+        context.deleteDatabase(defaultDatabase);
+    }
+
+    @Test
+    public void insertAndUpdate_publishTheRowsAsStored() {
+        int alien = (int) helper.insertMovieAndGetId(" Alien ", "Sci-Fi", 1979, " Great ", USER);
+
+        assertEquals(1, changes.size());
+        assertEquals(MovieChange.Type.INSERTED, changes.get(0).getType());
+        assertEquals(USER, changes.get(0).getUserId());
+        assertEquals(Collections.singletonList(helper.getMovie(alien)), changes.get(0).getMovies());
+
+        // Nothing written, nothing published
+        helper.updateMovie(new Movie(alien, "Alien", "sci fi", 1979, "Great"));
+        assertEquals(1, changes.size());
+
+        Movie stored = helper.updateMovie(new Movie(alien, "Alien", "Sci-Fi", 1986, "Great"));
+        assertEquals(2, changes.size());
+        assertEquals(MovieChange.Type.UPDATED, changes.get(1).getType());
+        assertEquals(Collections.singletonList(stored), changes.get(1).getMovies());
+    }
+
+    @Test
+    public void deleteAndRestore_publishOneChangePerUser_withTheIdsThatChanged() {
+        int alien = (int) helper.insertMovieAndGetId("Alien", "Sci-Fi", 1979, "", USER);
+        int heat = (int) helper.insertMovieAndGetId("Heat", "Crime", 1995, "", USER);
+        int up = (int) helper.insertMovieAndGetId("Up", "Animation", 2009, "", 2);
+        changes.clear();
+
+        assertEquals(3, helper.softDeleteMovies(Arrays.asList(alien, heat, up, 999)));
+        assertEquals(2, changes.size());
+        assertChange(changes.get(0), MovieChange.Type.DELETED, USER, alien, heat);
+        assertChange(changes.get(1), MovieChange.Type.DELETED, 2, up);
+
+        // Already deleted: nothing changed, nothing published
+        assertEquals(0, helper.softDeleteMovies(Collections.singletonList(alien)));
+        assertEquals(2, changes.size());
+
+        assertEquals(1, helper.restoreMovies(Collections.singletonList(heat)));
+        assertChange(changes.get(2), MovieChange.Type.RESTORED, USER, heat);
+
+        assertTrue(helper.deleteMovie(heat));
+        assertChange(changes.get(3), MovieChange.Type.DELETED, USER, heat);
+    }
+
+    @Test
+    public void unregisteredListener_hearsNothing() {
+        MovieChangeBus.Listener listener = changes::add;
+        helper.getChangeBus().register(listener, Runnable::run);
+        helper.getChangeBus().unregister(listener);
+        helper.getChangeBus().unregister(changes::add);
+
+        helper.insertMovieAndGetId("Alien", "Sci-Fi", 1979, "", USER);
+
+        // The listener from setUp is a different object and still registered
+        assertEquals(1, changes.size());
+    }
+
+    @Test
+    public void addingAMovie_updatesTheOpenList_withOneInsertAndNoQuery() throws Exception {
+        DatabaseHelper.getInstance(context).insertMovieAndGetId("Alien", "Sci-Fi", 1979, "", USER);
+        SessionManager.getInstance(context).createLoginSession(
+                new User(USER, "ana", "ana@example.com", "Ana Silva"));
+
+        ActivityController<MainActivity> main = Robolectric.buildActivity(MainActivity.class).setup();
+        RecyclerView recyclerView = main.get().findViewById(R.id.recyclerViewMovies);
+        MovieAdapter adapter = (MovieAdapter) recyclerView.getAdapter();
+        await(() -> adapter.getCurrentList().size() == 1);
+
+        RecordingObserver observer = new RecordingObserver();
+        adapter.registerAdapterDataObserver(observer);
+        MovieCache cache = new MovieRepository(context).getCache();
+        long reads = cache.hitCount() + cache.missCount();
+
+        // The Add button: AddMovieActivity on top, save, back to the list
+        main.pause().stop();
+        AddMovieActivity add = Robolectric.buildActivity(AddMovieActivity.class).setup().get();
+        ((EditText) add.findViewById(R.id.etTitle)).setText("Heat");
+        ((EditText) add.findViewById(R.id.etGenre)).setText("Crime");
+        ((EditText) add.findViewById(R.id.etYear)).setText("1995");
+        add.findViewById(R.id.btnSaveMovie).performClick();
+        await(add::isFinishing);
+        main.start().resume();
+        await(() -> adapter.getCurrentList().size() == 2);
+        settle();
+
+        assertEquals("Heat", adapter.getCurrentList().get(1).getTitle());
+        assertEquals(1, observer.inserted);
+        assertEquals(1, observer.lastInsertPosition);
+        assertEquals(0, observer.otherChanges);
+        assertEquals("the list was queried again", reads, cache.hitCount() + cache.missCount());
+    }
+
+    @Test
+    public void importChunks_reloadTheOpenListOnce() throws Exception {
+        DatabaseHelper database = DatabaseHelper.getInstance(context);
+        database.insertMovieAndGetId("Alien", "Sci-Fi", 1979, "", USER);
+        SessionManager.getInstance(context).createLoginSession(
+                new User(USER, "ana", "ana@example.com", "Ana Silva"));
+
+        ActivityController<MainActivity> main = Robolectric.buildActivity(MainActivity.class).setup();
+        MovieAdapter adapter = (MovieAdapter) ((RecyclerView) main.get()
+                .findViewById(R.id.recyclerViewMovies)).getAdapter();
+        await(() -> adapter.getCurrentList().size() == 1);
+        // A sorted list can't place inserted rows itself, so every change asks for a reload
+        ReflectionHelpers.setField(main.get(), "movieQuery",
+                MovieQuery.DEFAULT.sortedBy(MovieQuery.Sort.TITLE, false));
+        MovieCache cache = new MovieRepository(context).getCache();
+        long reads = cache.hitCount() + cache.missCount();
+
+        // What an import does: one committed chunk after another (small enough that the
+        // reloaded list fits one page, so no paging reads)
+        for (int chunk = 0; chunk < 3; chunk++) {
+            List<Movie> movies = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                movies.add(new Movie(0, "Movie " + chunk + "-" + i, "Drama", 2000, ""));
+            }
+            database.insertMovies(movies, USER);
+        }
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofSeconds(1));
+
+        assertEquals("one reload for the whole import", reads + 1, cache.hitCount() + cache.missCount());
+    }
+
+    private static void assertChange(MovieChange change, MovieChange.Type type, int userId,
+                                     Integer... movieIds) {
+        assertEquals(type, change.getType());
+        assertEquals(userId, change.getUserId());
+        assertEquals(Arrays.asList(movieIds), change.getMovieIds());
+    }
+
+    // Background work (database, list diffing) posts its results to the main looper;
+    // the clock moves too, so frames are drawn (MainActivity loads after its first frame)
+    private static void await(BooleanSupplier condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(5));
+            if (condition.getAsBoolean()) return;
+            Thread.sleep(5);
+        }
+        fail("timed out");
+    }
+
+    // Give anything else still in flight (e.g. a reload) the chance to land
+    private static void settle() throws Exception {
+        for (int i = 0; i < 40; i++) {
+            Thread.sleep(5);
+            shadowOf(Looper.getMainLooper()).idle();
+        }
+    }
+
+    private static class RecordingObserver extends RecyclerView.AdapterDataObserver {
+
+        int inserted;
+        int lastInsertPosition = -1;
+        int otherChanges;
+
+        @Override
+        public void onChanged() {
+            otherChanges++;
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            otherChanges++;
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+            otherChanges++;
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            inserted += itemCount;
+            lastInsertPosition = positionStart;
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            otherChanges++;
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            otherChanges++;
+        }
+    }
+}
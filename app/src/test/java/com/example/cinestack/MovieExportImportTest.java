@@ -0,0 +1,145 @@
+package com.example.cinestack;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Whatever MovieExporter writes, MovieImporter reads back unchanged.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MovieExportImportTest {
+
+    private static final String DB_NAME = "export_test.db";
+    private static final int SOURCE_USER = 1;
+    private static final int TARGET_USER = 2;
+
+    private Context context;
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DB_NAME);
+        helper = new DatabaseHelper(context, DB_NAME);
+
+        helper.insertMovies(Arrays.asList(
+                new Movie(0, "Alien", "Sci-Fi", 1979, "In space, no one can hear you scream"),
+                new Movie(0, "Crouching Tiger, Hidden Dragon", "Action", 2000, "Said \"wow\""),
+                new Movie(0, "Amélie", "Comedy", 2001, "Line one\nline two"),
+                new Movie(0, "Heat", "Crime", 1995, "")), SOURCE_USER);
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void csv_roundTrip() throws Exception {
+        assertRoundTrip(MovieImporter.Format.CSV);
+    }
+
+    @Test
+    public void json_roundTrip() throws Exception {
+        assertRoundTrip(MovieImporter.Format.JSON);
+    }
+
+    @Test
+    public void spreadsheetCsv_withBomCapitalisedHeaderAndBlankLines_imports() throws Exception {
+        String csv = "\uFEFF Title ,GENRE,Year,Review\r\n"
+                + "Up,Animation,2009,Balloons\r\n"
+                + "\r\n"
+                + "No year,Drama,,\r\n"
+                + "Heat,Crime,1995,\r\n"
+                + "\r\n";
+
+        MovieImporter.Result result = new MovieImporter(helper).importMovies(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                MovieImporter.Format.CSV, TARGET_USER);
+
+        assertEquals(2, result.imported);
+        assertEquals("only the row without a year", 1, result.skipped);
+        assertEquals(Arrays.asList("Up|Animation|2009|Balloons", "Heat|Crime|1995|"), contents(TARGET_USER));
+    }
+
+    @Test
+    public void exportProgress_countsOnlyLiveMovies() throws Exception {
+        List<String> progress = new ArrayList<>();
+        assertEquals(1, helper.softDeleteMovies(Arrays.asList(firstMovieId())));
+
+        int written = new MovieExporter(helper).export(new ByteArrayOutputStream(),
+                MovieImporter.Format.CSV, SOURCE_USER, null, (done, total) -> progress.add(done + "/" + total));
+
+        assertEquals(3, written);
+        assertEquals(Arrays.asList("3/3"), progress);
+        assertEquals(3, helper.getMovieCount(SOURCE_USER));
+    }
+
+    @Test(expected = OperationCanceledException.class)
+    public void cancelledExport_stops() throws Exception {
+        CancellationSignal signal = new CancellationSignal();
+        signal.cancel();
+
+        new MovieExporter(helper).export(new ByteArrayOutputStream(), MovieImporter.Format.CSV,
+                SOURCE_USER, signal, null);
+    }
+
+    private void assertRoundTrip(MovieImporter.Format format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        List<String> progress = new ArrayList<>();
+
+        int written = new MovieExporter(helper).export(out, format, SOURCE_USER, null,
+                (done, total) -> progress.add(done + "/" + total));
+
+        MovieImporter.Result result = new MovieImporter(helper).importMovies(
+                new ByteArrayInputStream(out.toByteArray()), format, TARGET_USER);
+
+        assertEquals(4, written);
+        assertEquals(Arrays.asList("4/4"), progress);
+        assertEquals(4, result.imported);
+        assertEquals(0, result.skipped);
+        assertEquals(contents(SOURCE_USER), contents(TARGET_USER));
+    }
+
+    // Movie fields without ids, which differ between the two copies
+    private int firstMovieId() {
+        Cursor cursor = helper.getMoviesByUser(SOURCE_USER);
+        assertTrue(cursor.moveToFirst());
+        int movieId = cursor.getInt(cursor.getColumnIndexOrThrow("movie_id"));
+        cursor.close();
+        return movieId;
+    }
+
+    private List<String> contents(int userId) {
+        List<String> rows = new ArrayList<>();
+        Cursor cursor = helper.getMoviesByUser(userId);
+        while (cursor.moveToNext()) {
+            rows.add(cursor.getString(cursor.getColumnIndexOrThrow("title")) + "|"
+                    + cursor.getString(cursor.getColumnIndexOrThrow("genre")) + "|"
+                    + cursor.getInt(cursor.getColumnIndexOrThrow("year")) + "|"
+                    + cursor.getString(cursor.getColumnIndexOrThrow("review")));
+        }
+        cursor.close();
+        return rows;
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.cinestack;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Sorted/filtered queries: keyset pages match an in-memory sort, and every sort
+ * is answered from an index without a temporary sort.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MovieQueryTest {
+
+    private static final String DB_NAME = "query_test.db";
+    private static final int USER = 1;
+    private static final String[] GENRES = {"Drama", "Comedy", "Horror", "Sci-Fi"};
+
+    private Context context;
+    private DatabaseHelper helper;
+    private List<Movie> library;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DB_NAME);
+        helper = new DatabaseHelper(context, DB_NAME);
+
+        // Plenty of ties in every column, so the movie_id tie-break matters
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            movies.add(new Movie(0, "Title " + (i % 17), GENRES[i % GENRES.length],
+                    1990 + (i % 9), ""));
+        }
+        helper.insertMovies(movies, USER);
+        helper.insertMovies(Collections.singletonList(new Movie(0, "Other", "Drama", 1995, "")), 2);
+        library = MovieRowMapper.readAll(helper.getMoviesByUser(USER));
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void everySort_pagesMatchInMemorySort() {
+        for (MovieQuery.Sort sort : MovieQuery.Sort.values()) {
+            for (boolean descending : new boolean[]{false, true}) {
+                MovieQuery query = MovieQuery.DEFAULT.sortedBy(sort, descending);
+
+                assertEquals(query.toString(), expected(query), pageThrough(query, 7));
+            }
+        }
+    }
+
+    @Test
+    public void filters_areAppliedInSql() {
+        MovieQuery query = MovieQuery.DEFAULT
+                .sortedBy(MovieQuery.Sort.YEAR, true)
+                .withGenres(Arrays.asList("Horror", "Drama"))
+                .withYearRange(1992, 1996);
+
+        List<Movie> result = pageThrough(query, 5);
+
+        assertFalse(result.isEmpty());
+        assertEquals(expected(query), result);
+        for (Movie movie : result) {
+            assertTrue(movie.getGenre().equals("Horror") || movie.getGenre().equals("Drama"));
+            assertTrue(movie.getYear() >= 1992 && movie.getYear() <= 1996);
+        }
+    }
+
+    @Test
+    public void everySort_usesIndex_withoutTempSort() {
+        Movie after = library.get(10);
+
+        for (MovieQuery.Sort sort : MovieQuery.Sort.values()) {
+            for (boolean descending : new boolean[]{false, true}) {
+                MovieQuery query = MovieQuery.DEFAULT.sortedBy(sort, descending);
+
+                for (Movie anchor : new Movie[]{null, after}) {
+                    String plan = explain(DatabaseHelper.buildMovieQuery(USER, query, anchor, 30));
+
+                    // "idx_movies_user (" so idx_movies_user doesn't also match idx_movies_user_title
+                    assertTrue(query + "\n" + plan, plan.contains("USING INDEX " + indexFor(sort) + " ("));
+                    assertFalse(query + "\n" + plan, plan.contains("TEMP B-TREE"));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void yearSort_usesIndexRangeForYearFilter() {
+        MovieQuery query = MovieQuery.DEFAULT
+                .sortedBy(MovieQuery.Sort.YEAR, false)
+                .withYearRange(1992, 1996);
+
+        String plan = explain(DatabaseHelper.buildMovieQuery(USER, query, null, 30));
+
+        assertTrue(plan, plan.contains("USING INDEX idx_movies_user_year (user_id=? AND year>? AND year<?)"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    private List<Movie> pageThrough(MovieQuery query, int pageSize) {
+        List<Movie> all = new ArrayList<>();
+        Movie after = null;
+        while (true) {
+            List<Movie> page = MovieRowMapper.readAll(helper.queryMovies(USER, query, after, pageSize));
+            all.addAll(page);
+            if (page.size() < pageSize) return all;
+            after = page.get(page.size() - 1);
+        }
+    }
+
+    private List<Movie> expected(MovieQuery query) {
+        Comparator<Movie> byColumn;
+        switch (query.getSort()) {
+            case TITLE: byColumn = Comparator.comparing(Movie::getTitle); break;
+            case YEAR: byColumn = Comparator.comparingInt(Movie::getYear); break;
+            case GENRE: byColumn = Comparator.comparing(Movie::getGenre); break;
+            default: byColumn = (a, b) -> 0;
+        }
+        Comparator<Movie> order = byColumn.thenComparingInt(Movie::getId);
+        if (query.isDescending()) order = order.reversed();
+
+        List<Movie> expected = new ArrayList<>();
+        for (Movie movie : library) {
+            boolean genreOk = query.getGenres().isEmpty() || query.getGenres().contains(movie.getGenre());
+            boolean minOk = query.getMinYear() == null || movie.getYear() >= query.getMinYear();
+            boolean maxOk = query.getMaxYear() == null || movie.getYear() <= query.getMaxYear();
+            if (genreOk && minOk && maxOk) expected.add(movie);
+        }
+        expected.sort(order);
+        return expected;
+    }
+
+    // The (user_id, column) index each sort reads in order; ADDED uses the user_id index,
+    // whose entries are in rowid order
+    private static String indexFor(MovieQuery.Sort sort) {
+        switch (sort) {
+            case TITLE: return "idx_movies_user_title";
+            case YEAR: return "idx_movies_user_year";
+            case GENRE: return "idx_movies_user_genre";
+            default: return "idx_movies_user";
+        }
+    }
+
+    private String explain(DatabaseHelper.SqlQuery query) {
+        Cursor cursor = helper.getReadableDatabase().rawQuery("EXPLAIN QUERY PLAN " + query.sql, query.args);
+        StringBuilder plan = new StringBuilder();
+        while (cursor.moveToNext()) {
+            plan.append(cursor.getString(cursor.getColumnIndexOrThrow("detail"))).append('\n');
+        }
+        cursor.close();
+        return plan.toString();
+    }
+}
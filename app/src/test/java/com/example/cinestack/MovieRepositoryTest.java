@@ -0,0 +1,162 @@
+package com.example.cinestack;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Checks that MovieRepository never touches the database on the main looper.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MovieRepositoryTest {
+
+    private RecordingDatabaseHelper databaseHelper;
+    private ExecutorService ioExecutor;
+    private MovieRepository repository;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        databaseHelper = new RecordingDatabaseHelper(context);
+        ioExecutor = Executors.newSingleThreadExecutor();
+        repository = new MovieRepository(databaseHelper, ioExecutor,
+                runnable -> new android.os.Handler(Looper.getMainLooper()).post(runnable),
+                new MovieCache(8, 1 << 20));
+    }
+
+    @After
+    public void tearDown() {
+        ioExecutor.shutdownNow();
+        databaseHelper.close();
+    }
+
+    @Test
+    public void movieOperations_runOffMainLooper_andDeliverOnMainLooper() throws Exception {
+        AtomicReference<List<Movie>> movies = new AtomicReference<>();
+        AtomicBoolean deliveredOnMain = new AtomicBoolean();
+
+        repository.insertMovie("Alien", "Sci-Fi", 1979, "Classic", 1, null);
+        repository.updateMovie(new Movie(1, "Alien", "Horror", 1979, "Still classic"), null);
+        repository.searchMovies(1, "Ali", null);
+        repository.getMoviesByUser(1, result -> {
+            movies.set(result);
+            deliveredOnMain.set(Looper.myLooper() == Looper.getMainLooper());
+        });
+        repository.deleteMovies(Collections.singletonList(1), null);
+        repository.getUserId("nobody", "secret", null);
+
+        ioExecutor.shutdown();
+        assertTrue(ioExecutor.awaitTermination(5, TimeUnit.SECONDS));
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertTrue(databaseHelper.accessCount > 0);
+        assertFalse("database opened on the main looper", databaseHelper.accessedOnMain);
+        assertEquals(1, movies.get().size());
+        assertTrue(deliveredOnMain.get());
+    }
+
+    @Test
+    public void getMovie_afterListLoad_isServedFromCache() throws Exception {
+        AtomicReference<Movie> movie = new AtomicReference<>();
+
+        repository.insertMovie("Alien", "Sci-Fi", 1979, "Classic", 1, null);
+        repository.getMoviesPage(1, 0, 30, null);
+        drain();
+        int accessesBeforeEdit = databaseHelper.accessCount;
+
+        repository.getMovie(1, movie::set);
+        drain();
+
+        assertEquals("Alien", movie.get().getTitle());
+        assertEquals(accessesBeforeEdit, databaseHelper.accessCount);
+    }
+
+    @Test
+    public void cachedSearch_toleratesNullCallback_andHonoursCancel() throws Exception {
+        AtomicReference<List<Movie>> results = new AtomicReference<>();
+
+        repository.insertMovie("Alien", "Sci-Fi", 1979, "Classic", 1, null);
+        repository.searchMovies(1, "Ali", null);
+        drain();
+
+        // Both served from the cache
+        repository.searchMovies(1, "Ali", null);
+        repository.searchMovies(1, "Ali", results::set).cancel();
+        drain();
+
+        assertNull("cancelled search delivered", results.get());
+    }
+
+    @Test
+    public void loadSession_readsThePreferencesOffTheMainLooper() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        new SessionManager(context).createLoginSession(new User(7, "ana", "ana@example.com", "Ana"));
+        // A fresh instance, like after a process restart: nothing read yet
+        SessionManager session = new SessionManager(context);
+        AtomicReference<User> user = new AtomicReference<>();
+
+        repository.loadSession(session, user::set);
+        ioExecutor.submit(() -> { }).get(5, TimeUnit.SECONDS);
+
+        // Loaded by the IO thread before the main looper ran anything
+        assertTrue(session.isLoaded());
+        shadowOf(Looper.getMainLooper()).idle();
+        assertEquals(7, user.get().getId());
+
+        session.clearSession();
+    }
+
+    // Wait for queued IO work, then run its callbacks
+    private void drain() throws Exception {
+        ioExecutor.submit(() -> { }).get(5, TimeUnit.SECONDS);
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    private static class RecordingDatabaseHelper extends DatabaseHelper {
+
+        volatile boolean accessedOnMain;
+        volatile int accessCount;
+
+        RecordingDatabaseHelper(Context context) {
+            super(context);
+        }
+
+        @Override
+        public SQLiteDatabase getReadableDatabase() {
+            record();
+            return super.getReadableDatabase();
+        }
+
+        @Override
+        public SQLiteDatabase getWritableDatabase() {
+            record();
+            return super.getWritableDatabase();
+        }
+
+        private void record() {
+            accessCount++;
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                accessedOnMain = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.cinestack;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.database.MatrixCursor;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * MovieRowMapper resolves columns once per cursor and copes with partial projections.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MovieRowMapperTest {
+
+    private static final String[] LIST_COLUMNS =
+            {"movie_id", "title", "genre", "year", "review", DatabaseHelper.COLUMN_REVIEW_TRUNCATED};
+
+    @Test
+    public void readAll_mapsEveryRow_andClosesTheCursor() {
+        MatrixCursor cursor = new MatrixCursor(LIST_COLUMNS);
+        cursor.addRow(new Object[]{1, "Alien", "Sci-Fi", 1979, "Tense", 0});
+        cursor.addRow(new Object[]{2, "Heat", "Crime", 1995, "Long", 1});
+
+        List<Movie> movies = MovieRowMapper.readAll(cursor);
+
+        assertEquals(Arrays.asList(
+                new Movie(1, "Alien", "Sci-Fi", 1979, "Tense", false),
+                new Movie(2, "Heat", "Crime", 1995, "Long", true)), movies);
+        assertTrue(cursor.isClosed());
+    }
+
+    @Test
+    public void columnsLeftOutOfTheProjection_readAsDefaults() {
+        MatrixCursor cursor = new MatrixCursor(new String[]{"title", "movie_id"});
+        cursor.addRow(new Object[]{"Alien", 1});
+
+        assertEquals(new Movie(1, "Alien", null, 0, null), MovieRowMapper.readFirst(cursor));
+        assertNull(MovieRowMapper.readFirst(new MatrixCursor(LIST_COLUMNS)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void projectionWithoutMovieId_isRejected() {
+        new MovieRowMapper(new MatrixCursor(new String[]{"title"}));
+    }
+
+    @Test
+    public void columnIndexes_areLookedUpOncePerCursor() {
+        MatrixCursor rows = new MatrixCursor(LIST_COLUMNS);
+        for (int i = 0; i < 500; i++) {
+            rows.addRow(new Object[]{i, "Movie " + i, "Drama", 2000, "", 0});
+        }
+        CountingCursor cursor = new CountingCursor(rows);
+
+        assertEquals(500, MovieRowMapper.readAll(cursor).size());
+        assertEquals(LIST_COLUMNS.length, cursor.lookups);
+    }
+
+    @Test
+    public void readInto_overwritesTheGivenInstance() {
+        MatrixCursor cursor = new MatrixCursor(LIST_COLUMNS);
+        cursor.addRow(new Object[]{1, "Alien", "Sci-Fi", 1979, "Tense", 0});
+        cursor.addRow(new Object[]{2, "Heat", "Crime", 1995, null, 1});
+        MovieRowMapper mapper = new MovieRowMapper(cursor);
+        Movie reused = new Movie(0, null, null, 0, null);
+
+        cursor.moveToNext();
+        assertSame(reused, mapper.readInto(reused));
+        assertEquals(new Movie(1, "Alien", "Sci-Fi", 1979, "Tense"), reused);
+
+        cursor.moveToNext();
+        mapper.readInto(reused);
+        assertEquals(new Movie(2, "Heat", "Crime", 1995, null, true), reused);
+    }
+
+    private static class CountingCursor extends CursorWrapper {
+
+        int lookups;
+
+        CountingCursor(Cursor cursor) {
+            super(cursor);
+        }
+
+        @Override
+        public int getColumnIndex(String columnName) {
+            lookups++;
+            return super.getColumnIndex(columnName);
+        }
+
+        @Override
+        public int getColumnIndexOrThrow(String columnName) {
+            lookups++;
+            return super.getColumnIndexOrThrow(columnName);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.cinestack;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * updateMovie writes only the columns that changed and returns the stored row.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MovieUpdateTest {
+
+    private static final String DB_NAME = "movie_update_test.db";
+    private static final String[] COLUMNS = {"title", "genre", "year", "review"};
+
+    private Context context;
+    private DatabaseHelper helper;
+    private int movieId;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DB_NAME);
+        helper = new DatabaseHelper(context, DB_NAME);
+        movieId = (int) helper.insertMovieAndGetId("Alien", "Sci-Fi", 1979, "Great", 1);
+
+        // Record which columns each UPDATE sets
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.execSQL("CREATE TABLE update_log (col TEXT)");
+        for (String column : COLUMNS) {
+            db.execSQL("CREATE TRIGGER log_" + column + " AFTER UPDATE OF " + column +
+                    " ON movies BEGIN INSERT INTO update_log VALUES ('" + column + "'); END");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void onlyChangedColumns_areWritten() {
+        Movie stored = helper.updateMovie(new Movie(movieId, "Alien", "Sci-Fi", 1986, "Great"));
+
+        assertEquals(Collections.singletonList("year"), updatedColumns());
+        assertEquals(1986, stored.getYear());
+        assertEquals(1986, helper.getMovie(movieId).getYear());
+    }
+
+    @Test
+    public void noChanges_writeNothing_andReturnTheRow() {
+        // Same genre in another spelling, extra whitespace around the title
+        Movie stored = helper.updateMovie(new Movie(movieId, " Alien ", "sci fi", 1979, "Great"));
+
+        assertTrue(updatedColumns().isEmpty());
+        assertEquals(new Movie(movieId, "Alien", "Sci-Fi", 1979, "Great"), stored);
+    }
+
+    @Test
+    public void genreChange_relinksGenres_andReturnsCanonicalSpelling() {
+        helper.insertMovieAndGetId("Heat", "Crime", 1995, "", 1);
+
+        Movie stored = helper.updateMovie(new Movie(movieId, "Alien", "horror / CRIME", 1979, "Great"));
+
+        assertEquals(Collections.singletonList("genre"), updatedColumns());
+        assertEquals("horror, Crime", stored.getGenre());
+        assertEquals(stored, helper.getMovie(movieId));
+        assertEquals(2, helper.getGenreCounts(1).size());
+    }
+
+    @Test
+    public void missingMovie_returnsNull() {
+        assertNull(helper.updateMovie(new Movie(movieId + 100, "Ghost", "Drama", 2000, "")));
+    }
+
+    private List<String> updatedColumns() {
+        List<String> columns = new ArrayList<>();
+        Cursor cursor = helper.getReadableDatabase().rawQuery("SELECT col FROM update_log", null);
+        while (cursor.moveToNext()) columns.add(cursor.getString(0));
+        cursor.close();
+        return columns;
+    }
+}
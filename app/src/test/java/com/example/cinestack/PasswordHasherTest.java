@@ -0,0 +1,83 @@
+package com.example.cinestack;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * PBKDF2 correctness and the stored hash format.
+ */
+public class PasswordHasherTest {
+
+    private final PasswordHasher hasher = new PasswordHasher(PasswordHasher.MIN_ITERATIONS);
+
+    @Test
+    public void pbkdf2_matchesRfc7914Vector() {
+        byte[] expected = hex("55ac046e56e3089fec1691c22544b605f94185216dde0465e68b9d57c20dacbc"
+                + "49ca9cccf179b645991664b39d77ef317c71b845b1e30bd509112041d3a19783");
+
+        assertArrayEquals(expected, PasswordHasher.pbkdf2("passwd", "salt".getBytes(), 1, 64));
+    }
+
+    @Test
+    public void hash_isSaltedAndVerifies() {
+        String first = hasher.hash("secret");
+        String second = hasher.hash("secret");
+
+        assertNotEquals(first, second);
+        assertTrue(first.startsWith("pbkdf2_sha256$" + PasswordHasher.MIN_ITERATIONS + "$"));
+        assertTrue(hasher.verify("secret", first));
+        assertFalse(hasher.verify("Secret", first));
+        assertFalse(hasher.needsRehash(first));
+    }
+
+    @Test
+    public void legacySha256_verifiesButNeedsRehash() {
+        String legacy = PasswordHasher.legacySha256("secret");
+
+        assertTrue(hasher.verify("secret", legacy));
+        assertFalse(hasher.verify("other", legacy));
+        assertTrue(hasher.needsRehash(legacy));
+    }
+
+    @Test
+    public void muchHigherIterationSetting_requestsRehash() {
+        String weak = hasher.hash("secret");
+        PasswordHasher stronger = new PasswordHasher(PasswordHasher.MIN_ITERATIONS * 3);
+
+        assertTrue(stronger.verify("secret", weak));
+        assertTrue(stronger.needsRehash(weak));
+    }
+
+    @Test
+    public void slightlyHigherIterationSetting_keepsTheStoredHash() {
+        String stored = hasher.hash("secret");
+
+        // A recalibration that lands a little higher must not rewrite every row on login
+        assertFalse(new PasswordHasher(PasswordHasher.MIN_ITERATIONS + 1).needsRehash(stored));
+        assertFalse(new PasswordHasher(PasswordHasher.MIN_ITERATIONS * 2).needsRehash(stored));
+    }
+
+    @Test
+    public void calibrate_staysWithinBounds() {
+        int iterations = PasswordHasher.calibrate(1);
+
+        assertTrue(iterations >= PasswordHasher.MIN_ITERATIONS);
+        assertTrue(iterations <= PasswordHasher.MAX_ITERATIONS);
+    }
+
+    @Test
+    public void corruptHash_doesNotVerify() {
+        assertFalse(hasher.verify("secret", "pbkdf2_sha256$abc$00$00"));
+        assertFalse(hasher.verify("secret", "pbkdf2_sha256$10000$zz$00"));
+        assertFalse(hasher.verify("secret", null));
+    }
+
+    private static byte[] hex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.cinestack;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * DatabaseHelper latency histograms and the slow-query log.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class QueryMetricsTest {
+
+    private static final String DB_NAME = "query_metrics_test.db";
+    private static final String[] ARGS = {"1"};
+
+    private Context context;
+    private DatabaseHelper helper;
+    private QueryMetrics metrics;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DB_NAME);
+        helper = new DatabaseHelper(context, DB_NAME);
+        metrics = helper.getMetrics();
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void disabled_recordsNothing() {
+        helper.insertMovieAndGetId("Alien", "Sci-Fi", 1979, "", 1);
+        close(helper.getMoviesPage(1, 0, 30));
+
+        assertEquals(0, metrics.getCount(QueryMetrics.Operation.INSERT_MOVIE));
+        assertEquals(0, metrics.getCount(QueryMetrics.Operation.GET_MOVIES_PAGE));
+        assertTrue(metrics.getSlowQueries().isEmpty());
+    }
+
+    @Test
+    public void enabled_countsCallsAndRows_perMethod() {
+        metrics.setEnabled(true);
+        helper.insertMovies(Arrays.asList(
+                new Movie(0, "Alien", "Sci-Fi", 1979, ""),
+                new Movie(0, "Aliens", "Sci-Fi", 1986, ""),
+                new Movie(0, "Heat", "Crime", 1995, "")), 1);
+
+        close(helper.getMoviesPage(1, 0, 30));
+        close(helper.getMoviesPage(1, 0, 2));
+        close(helper.searchMovies(1, "alien"));
+
+        assertEquals(1, metrics.getCount(QueryMetrics.Operation.INSERT_MOVIES));
+        assertEquals(3, metrics.getRows(QueryMetrics.Operation.INSERT_MOVIES));
+        assertEquals(2, metrics.getCount(QueryMetrics.Operation.GET_MOVIES_PAGE));
+        assertEquals(5, metrics.getRows(QueryMetrics.Operation.GET_MOVIES_PAGE));
+        assertEquals(2, metrics.getRows(QueryMetrics.Operation.SEARCH_MOVIES));
+        assertTrue(metrics.dump().contains("get_movies_page"));
+    }
+
+    @Test
+    public void slowQueries_keepSqlArgCountAndPlan() {
+        metrics.setEnabled(true);
+        metrics.setSlowQueryMillis(0);
+        helper.insertMovieAndGetId("Alien", "Sci-Fi", 1979, "", 1);
+
+        close(helper.getMoviesPage(1, 0, 30));
+
+        QueryMetrics.SlowQuery page = slowQuery(QueryMetrics.Operation.GET_MOVIES_PAGE);
+        assertEquals(DatabaseHelper.SQL_MOVIES_PAGE, page.sql);
+        assertEquals(3, page.argCount);
+        assertEquals(1, page.rows);
+        assertFalse(page.plan.isEmpty());
+        assertTrue(page.plan.toString(), page.plan.get(0).contains("movies"));
+
+        // Writes are logged without a plan
+        QueryMetrics.SlowQuery insert = slowQuery(QueryMetrics.Operation.INSERT_MOVIE);
+        assertNull(insert.sql);
+        assertTrue(insert.plan.isEmpty());
+        assertTrue(metrics.dump().contains("(several statements)"));
+    }
+
+    @Test
+    public void slowQueries_leaveBindValuesOutOfTheReport() {
+        metrics.setEnabled(true);
+        metrics.setSlowQueryMillis(0);
+
+        assertFalse(helper.checkUsernameExists("private.person"));
+        assertFalse(helper.checkEmailExists("private.person@example.com"));
+
+        String report = metrics.dump();
+        assertTrue(report, report.contains("check_email"));
+        assertFalse(report, report.contains("private.person"));
+        assertEquals(1, slowQuery(QueryMetrics.Operation.CHECK_USERNAME).argCount);
+    }
+
+    @Test
+    public void slowLog_keepsTheNewestEntries() {
+        metrics.setEnabled(true);
+        metrics.setSlowQueryMillis(0);
+
+        for (int i = 0; i < QueryMetrics.SLOW_LOG_SIZE + 10; i++) {
+            metrics.end(QueryMetrics.Operation.GET_MOVIE, metrics.start(), i);
+        }
+
+        List<QueryMetrics.SlowQuery> slow = metrics.getSlowQueries();
+        assertEquals(QueryMetrics.SLOW_LOG_SIZE, slow.size());
+        assertEquals(10, slow.get(0).rows);
+    }
+
+    @Test
+    public void percentiles_comeFromTheBuckets() {
+        metrics.setEnabled(true);
+        // 95 calls of about 30us, 5 of about 3ms
+        for (int i = 0; i < 100; i++) {
+            long took = i < 95 ? 30_000 : 3_000_000;
+            metrics.end(QueryMetrics.Operation.GET_MOVIE, System.nanoTime() - took, 1);
+        }
+
+        assertEquals(50, metrics.getPercentileMicros(QueryMetrics.Operation.GET_MOVIE, 50));
+        assertEquals(50, metrics.getPercentileMicros(QueryMetrics.Operation.GET_MOVIE, 95));
+        long p99 = metrics.getPercentileMicros(QueryMetrics.Operation.GET_MOVIE, 99);
+        assertTrue(String.valueOf(p99), p99 >= 3_000 && p99 <= 5_000);
+
+        assertEquals(0, QueryMetrics.bucketFor(10_000));
+        assertEquals(1, QueryMetrics.bucketFor(15_000));
+        assertEquals(QueryMetrics.BUCKET_BOUNDS_MICROS.length, QueryMetrics.bucketFor(60_000_000_000L));
+    }
+
+    @Test
+    public void recording_allocatesNothing_belowTheSlowThreshold() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        // Warm up both paths, and the allocation counter itself
+        for (boolean enabled : new boolean[]{false, true}) {
+            metrics.setEnabled(enabled);
+            record(100_000);
+        }
+        threads.getThreadAllocatedBytes(thread);
+
+        for (boolean enabled : new boolean[]{false, true}) {
+            metrics.setEnabled(enabled);
+            long before = threads.getThreadAllocatedBytes(thread);
+            record(100_000);
+            long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+            // One object per call would be megabytes
+            assertTrue("enabled=" + enabled + ": " + allocated + " bytes", allocated < 10_000);
+        }
+    }
+
+    private void record(int calls) {
+        for (int i = 0; i < calls; i++) {
+            long start = metrics.start();
+            metrics.end(QueryMetrics.Operation.GET_MOVIES_PAGE, start, 30, null,
+                    DatabaseHelper.SQL_MOVIES_PAGE, ARGS);
+        }
+    }
+
+    private QueryMetrics.SlowQuery slowQuery(QueryMetrics.Operation operation) {
+        for (QueryMetrics.SlowQuery query : metrics.getSlowQueries()) {
+            if (query.operation == operation) return query;
+        }
+        throw new AssertionError(operation + " was not logged");
+    }
+
+    private static void close(Cursor cursor) {
+        cursor.close();
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.cinestack;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * List queries return only the start of long reviews; single-movie reads and the
+ * export return all of it.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ReviewSnippetTest {
+
+    private static final String DB_NAME = "review_snippet_test.db";
+    private static final int USER = 1;
+    private static final int SNIPPET = DatabaseHelper.REVIEW_SNIPPET_LENGTH;
+
+    private Context context;
+    private DatabaseHelper helper;
+    private String longReview;
+    private int epic;
+    private int shortOne;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DB_NAME);
+        helper = new DatabaseHelper(context, DB_NAME);
+
+        StringBuilder review = new StringBuilder();
+        while (review.length() < 5 * SNIPPET) review.append("An epic review, line ").append(review.length()).append(". ");
+        longReview = review.toString().trim();
+
+        epic = (int) helper.insertMovieAndGetId("Lawrence of Arabia", "Drama", 1962, longReview, USER);
+        shortOne = (int) helper.insertMovieAndGetId("Up", "Animation", 2009, "Short and sweet", USER);
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void listQueries_cutLongReviews_andFlagThem() {
+        List<List<Movie>> lists = new ArrayList<>();
+        lists.add(MovieRowMapper.readAll(helper.getMoviesByUser(USER)));
+        lists.add(MovieRowMapper.readAll(helper.getMoviesPage(USER, 0, 30)));
+        lists.add(MovieRowMapper.readAll(helper.queryMovies(USER, MovieQuery.DEFAULT.sortedBy(MovieQuery.Sort.TITLE, false), null, 30)));
+
+        for (List<Movie> movies : lists) {
+            assertCut(find(movies, epic));
+            assertWhole(find(movies, shortOne));
+        }
+
+        assertCut(find(MovieRowMapper.readAll(helper.searchMovies(USER, "arabia")), epic));
+        assertWhole(find(MovieRowMapper.readAll(helper.searchMovies(USER, "sweet")), shortOne));
+    }
+
+    @Test
+    public void reviewOfExactlySnippetLength_isNotFlagged() {
+        String exact = longReview.substring(0, SNIPPET);
+        int movieId = (int) helper.insertMovieAndGetId("Heat", "Crime", 1995, exact, USER);
+
+        Movie movie = find(MovieRowMapper.readAll(helper.getMoviesByUser(USER)), movieId);
+        assertEquals(exact, movie.getReview());
+        assertFalse(movie.isReviewTruncated());
+    }
+
+    @Test
+    public void changes_carryListRows_likeTheQueries() {
+        List<MovieChange> changes = new ArrayList<>();
+        helper.getChangeBus().register(changes::add, Runnable::run);
+
+        int movieId = (int) helper.insertMovieAndGetId("Ran", "Drama", 1985, longReview, USER);
+        helper.insertMovies(Collections.singletonList(new Movie(0, "Kagemusha", "Drama", 1980, longReview)), USER);
+        Movie stored = helper.updateMovie(new Movie(movieId, "Ran", "Drama", 1985, longReview + " More."));
+
+        assertEquals(3, changes.size());
+        for (MovieChange change : changes) {
+            assertEquals(SNIPPET, change.getMovies().get(0).getReview().length());
+            assertTrue(change.getMovies().get(0).isReviewTruncated());
+        }
+        assertEquals(find(MovieRowMapper.readAll(helper.getMoviesByUser(USER)), movieId),
+                changes.get(2).getMovies().get(0));
+        // The caller of updateMovie still gets the whole row
+        assertEquals(longReview + " More.", stored.getReview());
+    }
+
+    @Test
+    public void getMovie_andExport_returnTheWholeReview() throws Exception {
+        assertEquals(longReview, helper.getMovie(epic).getReview());
+        assertFalse(helper.getMovie(epic).isReviewTruncated());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new MovieExporter(helper).export(out, MovieImporter.Format.JSON, USER, null, null);
+        assertTrue(new String(out.toByteArray(), StandardCharsets.UTF_8).contains(longReview));
+    }
+
+    @Test
+    public void repositoryGetMovie_skipsCachedSnippets() {
+        List<Runnable> io = new ArrayList<>();
+        MovieRepository repository = new MovieRepository(helper, io::add, Runnable::run,
+                new MovieCache(8, 1 << 20));
+        repository.getMoviesPage(USER, 0, 30, movies -> { });
+        io.remove(0).run();
+
+        // The short review is complete in the cache; the long one has to be read
+        AtomicReference<Movie> result = new AtomicReference<>();
+        repository.getMovie(shortOne, result::set);
+        assertTrue(io.isEmpty());
+        assertEquals("Short and sweet", result.get().getReview());
+
+        repository.getMovie(epic, result::set);
+        assertEquals(1, io.size());
+        io.remove(0).run();
+        assertEquals(longReview, result.get().getReview());
+    }
+
+    private void assertCut(Movie movie) {
+        assertEquals(longReview.substring(0, SNIPPET), movie.getReview());
+        assertTrue(movie.isReviewTruncated());
+    }
+
+    private static void assertWhole(Movie movie) {
+        assertEquals("Short and sweet", movie.getReview());
+        assertFalse(movie.isReviewTruncated());
+    }
+
+    private static Movie find(List<Movie> movies, int movieId) {
+        for (Movie movie : movies) {
+            if (movie.getId() == movieId) return movie;
+        }
+        throw new AssertionError("movie " + movieId + " not in " + movies.size() + " rows");
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.cinestack;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * SearchPipeline driven by a fake clock and a fake searcher.
+ */
+public class SearchPipelineTest {
+
+    private static final long DEBOUNCE = 300;
+
+    private FakeClock clock;
+    private FakeSearcher searcher;
+    private List<List<Movie>> delivered;
+    private SearchPipeline pipeline;
+
+    @Before
+    public void setUp() {
+        clock = new FakeClock();
+        searcher = new FakeSearcher();
+        delivered = new ArrayList<>();
+        pipeline = new SearchPipeline(clock, searcher, delivered::add, DEBOUNCE);
+    }
+
+    @Test
+    public void fastTyping_issuesSingleQuery() {
+        for (String text : new String[]{"a", "al", "ali", "alie", "alien"}) {
+            pipeline.onQueryChanged(text);
+            clock.advance(50);
+        }
+        assertTrue(searcher.queries.isEmpty());
+
+        clock.advance(DEBOUNCE);
+
+        assertEquals(Collections.singletonList("alien"), searcher.queries);
+    }
+
+    @Test
+    public void newerQuery_cancelsInFlightQuery_andDropsItsResult() {
+        pipeline.onQueryChanged("ali");
+        clock.advance(DEBOUNCE);
+        FakeSearcher.Request first = searcher.requests.get(0);
+
+        pipeline.onQueryChanged("star");
+        assertTrue(first.cancelled);
+
+        // Old query finishes anyway after the new one started
+        first.complete();
+        assertTrue(delivered.isEmpty());
+
+        clock.advance(DEBOUNCE);
+        searcher.requests.get(1).complete();
+
+        assertEquals(1, delivered.size());
+        assertEquals("star", delivered.get(0).get(0).getTitle());
+    }
+
+    @Test
+    public void cancel_dropsPendingQuery() {
+        pipeline.onQueryChanged("ali");
+        pipeline.cancel();
+        clock.advance(DEBOUNCE * 2);
+
+        assertTrue(searcher.queries.isEmpty());
+    }
+
+    private static class FakeClock implements SearchPipeline.Scheduler {
+
+        private long now;
+        private final List<Task> tasks = new ArrayList<>();
+
+        @Override
+        public MovieRepository.Cancellable schedule(Runnable runnable, long delayMillis) {
+            Task task = new Task(now + delayMillis, runnable);
+            tasks.add(task);
+            return () -> tasks.remove(task);
+        }
+
+        void advance(long millis) {
+            now += millis;
+            for (Iterator<Task> it = new ArrayList<>(tasks).iterator(); it.hasNext(); ) {
+                Task task = it.next();
+                if (task.dueAt <= now && tasks.remove(task)) {
+                    task.runnable.run();
+                }
+            }
+        }
+
+        private static class Task {
+            final long dueAt;
+            final Runnable runnable;
+
+            Task(long dueAt, Runnable runnable) {
+                this.dueAt = dueAt;
+                this.runnable = runnable;
+            }
+        }
+    }
+
+    private static class FakeSearcher implements SearchPipeline.Searcher {
+
+        final List<String> queries = new ArrayList<>();
+        final List<Request> requests = new ArrayList<>();
+
+        @Override
+        public MovieRepository.Cancellable search(String query,
+                                                  MovieRepository.Callback<List<Movie>> callback) {
+            Request request = new Request(query, callback);
+            queries.add(query);
+            requests.add(request);
+            return () -> request.cancelled = true;
+        }
+
+        static class Request {
+            final String query;
+            final MovieRepository.Callback<List<Movie>> callback;
+            boolean cancelled;
+
+            Request(String query, MovieRepository.Callback<List<Movie>> callback) {
+                this.query = query;
+                this.callback = callback;
+            }
+
+            void complete() {
+                callback.onResult(Collections.singletonList(
+                        new Movie(1, query, "Drama", 2000, "")));
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.cinestack;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.*;
+
+/**
+ * Session is served from memory after the first read and survives a restart.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SessionManagerTest {
+
+    private static final String PREF_NAME = "CineStackSession";
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        preferences().edit().clear().commit();
+    }
+
+    @After
+    public void tearDown() {
+        preferences().edit().clear().commit();
+    }
+
+    @Test
+    public void loggedOut_byDefault() {
+        SessionManager session = new SessionManager(context);
+
+        assertFalse(session.isLoggedIn());
+        assertNull(session.getUser());
+        assertEquals(SessionManager.NO_USER, session.getUserId());
+    }
+
+    @Test
+    public void loginSession_isReadFromMemory_andPersisted() {
+        SessionManager session = new SessionManager(context);
+        session.createLoginSession(new User(7, "ana", "ana@example.com", "Ana Silva"));
+
+        // Changing the file behind its back doesn't affect the in-memory session
+        preferences().edit().putInt("userId", 99).commit();
+        assertEquals(7, session.getUserId());
+
+        preferences().edit().putInt("userId", 7).commit();
+        SessionManager restarted = new SessionManager(context);
+        assertTrue(restarted.isLoggedIn());
+        assertEquals(7, restarted.getUserId());
+        assertEquals("ana", restarted.getUsername());
+        assertEquals("ana@example.com", restarted.getEmail());
+        assertEquals("Ana Silva", restarted.getFullName());
+    }
+
+    @Test
+    public void clearSession_logsOutImmediately_andOnDisk() {
+        SessionManager session = new SessionManager(context);
+        session.createLoginSession(new User(7, "ana", "ana@example.com", "Ana Silva"));
+
+        session.clearSession();
+
+        assertEquals(SessionManager.NO_USER, session.getUserId());
+        assertEquals(SessionManager.NO_USER, new SessionManager(context).getUserId());
+    }
+
+    @Test
+    public void sessionWithoutUserId_countsAsLoggedOut() {
+        // Written by the old createLoginSession(username, fullName, email)
+        preferences().edit()
+                .putBoolean("isLoggedIn", true)
+                .putString("username", "ana")
+                .commit();
+
+        assertFalse(new SessionManager(context).isLoggedIn());
+    }
+
+    @Test
+    public void getInstance_isShared() {
+        assertSame(SessionManager.getInstance(context), SessionManager.getInstance(context));
+    }
+
+    private SharedPreferences preferences() {
+        return context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.cinestack;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Batch soft delete, undo and purge of tombstoned movies.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SoftDeleteTest {
+
+    private static final String DB_NAME = "soft_delete_test.db";
+    private static final long NOW = 1_700_000_000_000L;
+
+    private Context context;
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DB_NAME);
+        helper = new DatabaseHelper(context, DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void batchLargerThanBindLimit_isDeletedAndRestoredInFull() {
+        // More ids than SQLite's 999 bound parameters, and several MAX_IN_ARGS chunks
+        List<Integer> ids = insertMovies(2500);
+
+        assertEquals(2500, helper.softDeleteMovies(ids, NOW));
+        assertEquals(0, rows(helper.getMoviesByUser(1)));
+        assertEquals(0, helper.getUserStats(1).getMovieCount());
+        assertTrue(helper.getGenreCounts(1).isEmpty());
+
+        assertEquals(2500, helper.restoreMovies(ids));
+        assertEquals(2500, rows(helper.getMoviesByUser(1)));
+        assertEquals(2500, helper.getUserStats(1).getMovieCount());
+        assertEquals(2500, helper.getGenreCounts(1).get(0).getCount());
+    }
+
+    @Test
+    public void deletedMovies_areHiddenEverywhere() {
+        long alien = helper.insertMovieAndGetId("Alien", "Sci-Fi", 1979, "", 1);
+        helper.insertMovieAndGetId("Aliens", "Sci-Fi", 1986, "", 1);
+
+        assertEquals(1, helper.softDeleteMovies(Collections.singletonList((int) alien), NOW));
+
+        assertNull(helper.getMovie((int) alien));
+        assertEquals(1, rows(helper.getMoviesPage(1, 0, 30)));
+        assertEquals(1, rows(helper.searchMovies(1, "alien")));
+        assertEquals(1, rows(helper.queryMovies(1,
+                MovieQuery.DEFAULT.sortedBy(MovieQuery.Sort.TITLE, false), null, 30)));
+        assertNull(helper.updateMovie(new Movie((int) alien, "Alien", "Horror", 1979, "")));
+        // Deleting twice counts once
+        assertEquals(0, helper.softDeleteMovies(Collections.singletonList((int) alien), NOW));
+    }
+
+    @Test
+    public void nextDelete_purgesExpiredTombstones() {
+        List<Integer> ids = insertMovies(3);
+
+        helper.softDeleteMovies(Collections.singletonList(ids.get(0)), NOW);
+        helper.softDeleteMovies(Collections.singletonList(ids.get(1)),
+                NOW + DatabaseHelper.TOMBSTONE_TTL_MILLIS + 1);
+
+        // The first tombstone is gone for good, with its genre links; the second can still be undone
+        assertEquals(2, storedRows());
+        assertEquals(0, helper.restoreMovies(Collections.singletonList(ids.get(0))));
+        assertEquals(1, helper.restoreMovies(Collections.singletonList(ids.get(1))));
+        assertEquals(2, DatabaseUtils.longForQuery(helper.getReadableDatabase(),
+                "SELECT COUNT(*) FROM movie_genres", null));
+    }
+
+    @Test
+    public void purge_leavesLiveMoviesAndCountsAlone() {
+        List<Integer> ids = insertMovies(4);
+        helper.softDeleteMovies(Arrays.asList(ids.get(0), ids.get(1)), NOW);
+
+        assertEquals(2, helper.purgeDeletedMovies(NOW + 1));
+
+        assertEquals(2, storedRows());
+        assertEquals(2, helper.getUserStats(1).getMovieCount());
+        assertEquals(2, helper.getGenreCounts(1).get(0).getCount());
+    }
+
+    private List<Integer> insertMovies(int count) {
+        List<Movie> movies = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            movies.add(new Movie(0, "Movie " + i, "Drama", 2000 + i % 20, ""));
+        }
+        assertEquals(count, helper.insertMovies(movies, 1));
+
+        List<Integer> ids = new ArrayList<>(count);
+        Cursor cursor = helper.getMoviesByUser(1);
+        while (cursor.moveToNext()) ids.add(cursor.getInt(cursor.getColumnIndexOrThrow("movie_id")));
+        cursor.close();
+        return ids;
+    }
+
+    // Rows in the table, tombstoned or not
+    private long storedRows() {
+        return DatabaseUtils.longForQuery(helper.getReadableDatabase(),
+                "SELECT COUNT(*) FROM movies", null);
+    }
+
+    private static int rows(Cursor cursor) {
+        int count = cursor.getCount();
+        cursor.close();
+        return count;
+    }
+}
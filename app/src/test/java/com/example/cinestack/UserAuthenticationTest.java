@@ -0,0 +1,113 @@
+package com.example.cinestack;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.*;
+
+/**
+ * Login against salted hashes, including upgrade of legacy SHA-256 rows,
+ * and the user record returned by authenticate().
+ */
+@RunWith(RobolectricTestRunner.class)
+public class UserAuthenticationTest {
+
+    private static final String DB_NAME = "auth_test.db";
+
+    private Context context;
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DB_NAME);
+        helper = new DatabaseHelper(context, DB_NAME);
+        helper.setPasswordHasher(new PasswordHasher(PasswordHasher.MIN_ITERATIONS));
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void registeredUser_logsInByUsernameOrEmail() {
+        assertTrue(helper.registerUser("Ana", "ana@example.com", "secret1", "Ana Silva"));
+
+        int userId = helper.getUserId("ana", "secret1");
+
+        assertNotEquals(-1, userId);
+        assertEquals(userId, helper.getUserId("ANA@example.com", "secret1"));
+        assertEquals(-1, helper.getUserId("ana", "wrong"));
+        assertTrue(storedPassword(userId).startsWith("pbkdf2_sha256$"));
+    }
+
+    @Test
+    public void legacyHash_isUpgradedOnSuccessfulLogin() {
+        assertTrue(helper.registerUser("bob", "bob@example.com", "secret1", "Bob"));
+        int userId = helper.getUserId("bob", "secret1");
+
+        ContentValues legacy = new ContentValues();
+        legacy.put("password", PasswordHasher.legacySha256("secret1"));
+        helper.getWritableDatabase().update("users", legacy, "id=?",
+                new String[]{String.valueOf(userId)});
+
+        assertEquals(-1, helper.getUserId("bob", "wrong"));
+        assertEquals(PasswordHasher.legacySha256("secret1"), storedPassword(userId));
+
+        assertEquals(userId, helper.getUserId("bob", "secret1"));
+        assertTrue(storedPassword(userId).startsWith("pbkdf2_sha256$"));
+        assertEquals(userId, helper.getUserId("bob", "secret1"));
+    }
+
+    @Test
+    public void authenticate_returnsFullUserRecord() {
+        assertTrue(helper.registerUser("Cara", "cara@example.com", "secret1", " Cara Jones "));
+
+        User byUsername = helper.authenticate("cara", "secret1");
+        User byEmail = helper.authenticate(" Cara@Example.com ", "secret1");
+
+        assertNotNull(byUsername);
+        assertEquals("cara", byUsername.getUsername());
+        assertEquals("cara@example.com", byUsername.getEmail());
+        assertEquals("Cara Jones", byUsername.getFullName());
+        assertNotNull(byEmail);
+        assertEquals(byUsername.getId(), byEmail.getId());
+        assertNull(helper.authenticate("cara", "wrong"));
+        assertNull(helper.authenticate("nobody", "secret1"));
+    }
+
+    @Test
+    public void loginLookup_usesBothUniqueIndexes() {
+        Cursor cursor = helper.getReadableDatabase().rawQuery(
+                "EXPLAIN QUERY PLAN " + DatabaseHelper.SQL_USER_BY_LOGIN, new String[]{"a", "a"});
+        StringBuilder plan = new StringBuilder();
+        while (cursor.moveToNext()) {
+            plan.append(cursor.getString(cursor.getColumnIndexOrThrow("detail"))).append('\n');
+        }
+        cursor.close();
+
+        assertTrue(plan.toString(), plan.toString().contains("(username=?)"));
+        assertTrue(plan.toString(), plan.toString().contains("(email=?)"));
+        assertFalse(plan.toString(), plan.toString().contains("SCAN"));
+    }
+
+    private String storedPassword(int userId) {
+        Cursor cursor = helper.getReadableDatabase().rawQuery(
+                "SELECT password FROM users WHERE id=?", new String[]{String.valueOf(userId)});
+        cursor.moveToFirst();
+        String password = cursor.getString(0);
+        cursor.close();
+        return password;
+    }
+}
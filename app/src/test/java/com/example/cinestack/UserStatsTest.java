@@ -0,0 +1,177 @@
+package com.example.cinestack;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * The trigger-maintained user_stats tables must always match a full scan of the
+ * movies that aren't soft-deleted.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class UserStatsTest {
+
+    private static final String DB_NAME = "user_stats_test.db";
+    private static final String[] GENRES = {"Sci-Fi", "sci fi", "Horror", "Drama, Horror", "Comedy / Drama"};
+    private static final String[] REVIEWS = {"", "  ", "Loved it", "Meh"};
+    // Genre links of the user's movies that aren't soft-deleted
+    private static final String LIVE_LINKS = "SELECT COUNT(*) FROM movie_genres mg " +
+            "JOIN movies m ON m.movie_id=mg.movie_id WHERE mg.user_id=? AND m.deleted_at IS NULL";
+
+    private Context context;
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DB_NAME);
+        helper = new DatabaseHelper(context, DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void newUser_hasEmptyStats() {
+        UserStats stats = helper.getUserStats(1);
+
+        assertEquals(0, stats.getMovieCount());
+        assertEquals(0, stats.getReviewCount());
+        assertTrue(stats.getMoviesPerYear().isEmpty());
+        assertTrue(stats.getMoviesPerGenre().isEmpty());
+    }
+
+    @Test
+    public void emptiedYearsAndGenres_disappear() {
+        long id = helper.insertMovieAndGetId("Alien", "Sci-Fi", 1979, "Great", 1);
+        assertNotNull(helper.updateMovie(new Movie((int) id, "Alien", "Horror", 1986, "")));
+
+        UserStats stats = helper.getUserStats(1);
+        assertEquals(0, stats.getReviewCount());
+        assertEquals(Arrays.asList(1986), new ArrayList<>(stats.getMoviesPerYear().keySet()));
+        assertEquals(1, stats.getMoviesPerGenre().size());
+        assertEquals("Horror", stats.getMoviesPerGenre().get(0).getName());
+
+        assertTrue(helper.deleteMovie((int) id));
+        assertEquals(0, helper.getUserStats(1).getMovieCount());
+        assertTrue(helper.getUserStats(1).getMoviesPerYear().isEmpty());
+        assertTrue(helper.getUserStats(1).getMoviesPerGenre().isEmpty());
+    }
+
+    @Test
+    public void randomInsertUpdateDelete_keepsStatsConsistent() {
+        Random random = new Random(42);
+        List<Integer> ids = new ArrayList<>();
+        List<Integer> trashed = new ArrayList<>();
+
+        for (int step = 0; step < 600; step++) {
+            int op = random.nextInt(12);
+            int userId = 1 + random.nextInt(3);
+
+            if (op < 4 || ids.isEmpty()) {
+                ids.add((int) helper.insertMovieAndGetId("Movie " + step, pick(random, GENRES),
+                        1990 + random.nextInt(8), pick(random, REVIEWS), userId));
+            } else if (op < 5) {
+                List<Movie> batch = new ArrayList<>();
+                for (int i = 0; i < 5; i++) {
+                    batch.add(new Movie(0, "Batch " + step + "." + i, pick(random, GENRES),
+                            1990 + random.nextInt(8), pick(random, REVIEWS)));
+                }
+                helper.insertMovies(batch, userId);
+                ids.clear();
+                ids.addAll(liveMovieIds());
+            } else if (op < 8) {
+                int id = ids.get(random.nextInt(ids.size()));
+                helper.updateMovie(new Movie(id, "Edited " + step, pick(random, GENRES),
+                        1990 + random.nextInt(8), pick(random, REVIEWS)));
+            } else if (op < 9) {
+                int id = ids.remove(random.nextInt(ids.size()));
+                helper.deleteMovie(id);
+            } else if (op < 11) {
+                List<Integer> batch = new ArrayList<>();
+                for (int i = 0; i < 3 && !ids.isEmpty(); i++) {
+                    batch.add(ids.remove(random.nextInt(ids.size())));
+                }
+                helper.softDeleteMovies(batch);
+                trashed.addAll(batch);
+            } else if (!trashed.isEmpty()) {
+                int id = trashed.remove(random.nextInt(trashed.size()));
+                helper.restoreMovies(Collections.singletonList(id));
+                ids.add(id);
+            }
+
+            if (step % 50 == 0) assertConsistent();
+        }
+        assertConsistent();
+    }
+
+    private void assertConsistent() {
+        for (int userId = 1; userId <= 3; userId++) {
+            UserStats stats = helper.getUserStats(userId);
+            SQLiteDatabase db = helper.getReadableDatabase();
+            String[] args = {String.valueOf(userId)};
+
+            assertEquals(count(db, "SELECT COUNT(*) FROM movies WHERE user_id=? AND deleted_at IS NULL", args),
+                    stats.getMovieCount());
+            assertEquals(count(db, "SELECT COUNT(*) FROM movies WHERE user_id=? AND deleted_at IS NULL " +
+                    "AND trim(review)<>''", args), stats.getReviewCount());
+
+            SortedMap<Integer, Integer> years = new TreeMap<>();
+            Cursor cursor = db.rawQuery(
+                    "SELECT year, COUNT(*) FROM movies WHERE user_id=? AND deleted_at IS NULL GROUP BY year", args);
+            while (cursor.moveToNext()) years.put(cursor.getInt(0), cursor.getInt(1));
+            cursor.close();
+            assertEquals(years, stats.getMoviesPerYear());
+
+            int linked = 0;
+            for (GenreCount genre : stats.getMoviesPerGenre()) {
+                assertEquals(genre.getName(), count(db, LIVE_LINKS + " AND genre_id=" + genre.getGenreId(), args),
+                        genre.getCount());
+                linked += genre.getCount();
+            }
+            assertEquals(count(db, LIVE_LINKS, args), linked);
+        }
+    }
+
+    private List<Integer> liveMovieIds() {
+        List<Integer> ids = new ArrayList<>();
+        Cursor cursor = helper.getReadableDatabase().rawQuery(
+                "SELECT movie_id FROM movies WHERE deleted_at IS NULL", null);
+        while (cursor.moveToNext()) ids.add(cursor.getInt(0));
+        cursor.close();
+        return ids;
+    }
+
+    private static int count(SQLiteDatabase db, String sql, String[] args) {
+        Cursor cursor = db.rawQuery(sql, args);
+        cursor.moveToFirst();
+        int count = cursor.getInt(0);
+        cursor.close();
+        return count;
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}